@@ -0,0 +1,22 @@
+package com.fabio.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+public class BookChangeDTO {
+    private Long    sequence;
+    private Long    bookId;
+    private String  type;
+    private String  title;
+    private String  author;
+    private String  isbn;
+
+    public BookChangeDTO(){}
+
+}
@@ -0,0 +1,23 @@
+package com.fabio.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+public class BookChangesDTO {
+    private List<BookChangeDTO> changes;
+    //token a ser enviado no proximo "since" (texto: uma posicao por shard)
+    private String              next;
+    //indica se ainda existem alteracoes depois desta pagina
+    private boolean             hasMore;
+
+    public BookChangesDTO(){}
+
+}
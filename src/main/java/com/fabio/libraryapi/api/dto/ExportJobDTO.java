@@ -0,0 +1,24 @@
+package com.fabio.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+public class ExportJobDTO {
+    private String  id;
+    private String  format;
+    private String  status;
+    //token para continuar pelo feed: /api/books/changes?since=
+    private String  since;
+    private Long    rows;
+    private Long    size;
+    private String  error;
+
+    public ExportJobDTO(){}
+
+}
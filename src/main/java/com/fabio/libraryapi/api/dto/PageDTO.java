@@ -0,0 +1,29 @@
+package com.fabio.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+//envelope enxuto de paginacao, no lugar do PageImpl serializado
+//(que repete pageable, sort e outros metadados em toda resposta).
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+public class PageDTO<T> {
+    private List<T> content;
+    private int     page;
+    private int     size;
+    private long    totalElements;
+    private int     totalPages;
+
+    public PageDTO(){}
+
+    public static <T> PageDTO<T> of(List<T> content, Page<?> page) {
+        return new PageDTO<T>(content, page.getNumber(), page.getSize(), page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -0,0 +1,19 @@
+package com.fabio.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+public class RecordingDTO {
+    private String  file;
+    private Long    size;
+    private Long    minutes;
+
+    public RecordingDTO(){}
+
+}
@@ -0,0 +1,20 @@
+package com.fabio.libraryapi.api.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+//404 sem stack trace e pre alocado: buscas por ids inexistentes
+//nao precisam criar uma excecao nova a cada requisicao.
+public class BookNotFoundException extends ResponseStatusException {
+
+    public static final BookNotFoundException INSTANCE = new BookNotFoundException();
+
+    private BookNotFoundException() {
+        super(HttpStatus.NOT_FOUND);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -1,20 +1,24 @@
 package com.fabio.libraryapi.api.resouce;
 
+import com.fabio.libraryapi.api.dto.BookChangeDTO;
+import com.fabio.libraryapi.api.dto.BookChangesDTO;
 import com.fabio.libraryapi.api.dto.BookDTO;
+import com.fabio.libraryapi.api.dto.PageDTO;
 import com.fabio.libraryapi.api.exception.ApiErros;
+import com.fabio.libraryapi.api.exception.BookNotFoundException;
+import com.fabio.libraryapi.diagnostics.BookRequestEvent;
 import com.fabio.libraryapi.entity.Book;
 import com.fabio.libraryapi.exception.BusinessException;
 import com.fabio.libraryapi.service.BookService;
+import com.fabio.libraryapi.service.feed.ChangeFeed;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
 
 import javax.persistence.GeneratedValue;
 import javax.validation.Valid;
@@ -25,6 +29,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/books")
 public class BookController {
 
+    static final int MAX_CHANGES_PAGE = 1000;
+    static final int MAX_SUGGESTIONS = 10;
 
     private BookService service;
     private ModelMapper modelMapper;
@@ -44,19 +50,28 @@ public class BookController {
     }
     @GetMapping("{id}")
     public BookDTO get(@PathVariable Long id){
-        return  service.getById(id)
-                .map(book->modelMapper.map(book,BookDTO.class))
-                .orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        BookRequestEvent event = BookRequestEvent.start("get");
+        Book book = service.getById(id).orElse(null);
+        if(book == null)
+        {
+            event.finish(1, 0);
+            throw BookNotFoundException.INSTANCE;
+        }
+        event.startMapping();
+        BookDTO dto = modelMapper.map(book,BookDTO.class);
+        event.endMapping();
+        event.finish(1, 1);
+        return dto;
     }
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@PathVariable Long id){
-        Book book = service.getById(id).orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Book book = service.getByIdForUpdate(id).orElseThrow(()-> BookNotFoundException.INSTANCE);
         service.delete(book);
     }
     @PutMapping("{id}")
     public BookDTO update(@PathVariable Long id, BookDTO dto){
-        Book book = service.getById(id).orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Book book = service.getByIdForUpdate(id).orElseThrow(()-> BookNotFoundException.INSTANCE);
         book.setAuthor(dto.getAuthor());
         book.setTitle(dto.getTitle());
         book=service.update(book);
@@ -64,17 +79,41 @@ public class BookController {
     }
 
     @GetMapping
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest){
+    public PageDTO<BookDTO> find(BookDTO dto, Pageable pageRequest){
+         BookRequestEvent event = BookRequestEvent.start("find");
         //converte o dto para entidade
+         event.startMapping();
          Book filter = modelMapper.map(dto,Book.class);
+         event.endMapping();
          //retorna uma pagina de livros
          Page<Book> result = service.find(filter,pageRequest);
          //retornando uma lista de dto
+         event.startMapping();
          List<BookDTO> list= result.getContent()
                 .stream()
                 .map(entity -> modelMapper.map(entity, BookDTO.class)).collect(Collectors.toList());
+         event.endMapping();
+         event.finish(pageRequest.isPaged() ? pageRequest.getPageSize() : -1, list.size());
+         return PageDTO.of(list,result);
+    }
 
-         return new PageImpl<BookDTO>(list,pageRequest,result.getTotalElements());
+    //feed incremental: o cliente guarda o "next" e pede apenas o que mudou depois dele
+    @GetMapping("changes")
+    public BookChangesDTO changes(@RequestParam(defaultValue = "0") String since,
+                                  @RequestParam(defaultValue = "100") int size){
+        int limit = Math.max(1, Math.min(size, MAX_CHANGES_PAGE));
+        ChangeFeed feed = service.changes(since, limit);
+        List<BookChangeDTO> list = feed.getChanges()
+                .stream()
+                .map(change -> modelMapper.map(change, BookChangeDTO.class)).collect(Collectors.toList());
+        return new BookChangesDTO(list, feed.getNext(), feed.isHasMore());
+    }
+
+    //autocomplete do campo de busca, respondido pelo indice em memoria
+    @GetMapping("suggest")
+    public List<String> suggest(@RequestParam String prefix,
+                                @RequestParam(defaultValue = "10") int limit){
+        return service.suggest(prefix, Math.min(limit, MAX_SUGGESTIONS));
     }
 
 
@@ -90,5 +129,10 @@ public class BookController {
     public ApiErros handleBusinessException(BusinessException ex) {
         return new ApiErros(ex);
     }
+    //responde o 404 direto, sem passar pela pagina de erro
+    @ExceptionHandler(BookNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public void handleBookNotFoundException() {
+    }
 
 }
@@ -0,0 +1,154 @@
+package com.fabio.libraryapi.api.resouce;
+
+import com.fabio.libraryapi.api.dto.ExportJobDTO;
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.service.BookExportService;
+import com.fabio.libraryapi.service.export.ExportFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@RestController
+@RequestMapping("/api/books/exports")
+public class BookExportController {
+
+    //atributos do tomcat para enviar o arquivo com sendfile, sem passar pela heap
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private BookExportService service;
+
+    @Autowired
+    public BookExportController(BookExportService service){
+        this.service = service;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ExportJobDTO create(@RequestParam(defaultValue = "NDJSON") ExportFormat format){
+        return toDTO(service.start(format));
+    }
+
+    @GetMapping("{id}")
+    public ExportJobDTO get(@PathVariable String id){
+        return toDTO(findJob(id));
+    }
+
+    //download do arquivo pronto, com suporte a Range para retomar de onde parou
+    @GetMapping("{id}/file")
+    public void download(@PathVariable String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExportJob job = findJob(id);
+        if (!job.isDone()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Exportacao ainda nao terminou.");
+        }
+        Path file = service.fileOf(job);
+        if (!Files.isRegularFile(file)) {
+            //library.exports.dir precisa ser o mesmo diretorio em todas as instancias
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Arquivo da exportacao nao encontrado.");
+        }
+        long length = job.getSize();
+        String etag = "\"" + job.getId() + "\"";
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFileName() + "\"");
+        response.setContentType("application/gzip");
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, out);
+                position += sent;
+                count -= sent;
+            }
+        }
+    }
+
+    //aceita um unico intervalo: "bytes=inicio-fim", "bytes=inicio-" ou "bytes=-sufixo"
+    static long[] parseRange(String header, long length) {
+        Matcher matcher = RANGE.matcher(header.trim());
+        if (!matcher.matches() || length == 0) {
+            return null;
+        }
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix == 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private ExportJob findJob(String id) {
+        return service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    private ExportJobDTO toDTO(ExportJob job) {
+        return ExportJobDTO.builder()
+                .id(job.getId())
+                .format(job.getFormat().name())
+                .status(job.getStatus().name())
+                .since(job.getChangeToken())
+                .rows(job.getRows())
+                .size(job.isDone() ? job.getSize() : null)
+                .error(job.getError())
+                .build();
+    }
+}
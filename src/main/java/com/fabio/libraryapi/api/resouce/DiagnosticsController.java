@@ -0,0 +1,60 @@
+package com.fabio.libraryapi.api.resouce;
+
+import com.fabio.libraryapi.api.dto.RecordingDTO;
+import com.fabio.libraryapi.diagnostics.FlightRecorderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+//so existe com library.jfr.dump-endpoint.enabled=true e so responde a quem mandar
+//o header X-Admin-Token igual a library.jfr.dump-endpoint.token; sem token configurado
+//todo pedido e recusado
+@RestController
+@RequestMapping("/api/admin/recordings")
+@ConditionalOnProperty(name = "library.jfr.dump-endpoint.enabled", havingValue = "true")
+public class DiagnosticsController {
+
+    static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private FlightRecorderService flightRecorder;
+    private byte[] adminToken;
+
+    @Autowired
+    public DiagnosticsController(FlightRecorderService flightRecorder,
+                                 @Value("${library.jfr.dump-endpoint.token:}") String adminToken){
+        this.flightRecorder = flightRecorder;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    //salva os ultimos minutos da gravacao continua em um arquivo .jfr no servidor.
+    //devolve apenas o nome do arquivo, o caminho fica em library.jfr.dump-dir
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public RecordingDTO dump(@RequestHeader(name = ADMIN_TOKEN_HEADER, required = false) String token,
+                             @RequestParam(defaultValue = "5") long minutes) throws IOException {
+        //comparacao em tempo constante para nao revelar o token aos poucos
+        if (adminToken.length == 0 || token == null
+                || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Acesso restrito a administradores.");
+        }
+        if (!flightRecorder.isRunning()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Gravacao continua do JFR desligada.");
+        }
+        if (minutes < 1 || minutes > flightRecorder.getMaxAge().toMinutes()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "minutes deve estar entre 1 e " + flightRecorder.getMaxAge().toMinutes());
+        }
+        Path file = flightRecorder.dump(Duration.ofMinutes(minutes));
+        return new RecordingDTO(file.getFileName().toString(), Files.size(file), minutes);
+    }
+}
@@ -0,0 +1,59 @@
+package com.fabio.libraryapi.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+//evento do jfr para cada requisicao do BookController, incluindo o tempo gasto no ModelMapper
+@Name("com.fabio.libraryapi.BookRequest")
+@Label("Book Request")
+@Category({"Library API", "Controller"})
+public class BookRequestEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Page Size")
+    int pageSize;
+
+    @Label("Rows Returned")
+    int rowsReturned;
+
+    @Label("SQL Count")
+    int sqlCount;
+
+    @Label("Mapping Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long mappingTime;
+
+    private transient long sqlBefore;
+    private transient long mappingStart;
+
+    public static BookRequestEvent start(String operation) {
+        BookRequestEvent event = new BookRequestEvent();
+        event.operation = operation;
+        event.sqlBefore = SqlStatementCounter.count();
+        event.begin();
+        return event;
+    }
+
+    public void startMapping() {
+        mappingStart = System.nanoTime();
+    }
+
+    public void endMapping() {
+        mappingTime += System.nanoTime() - mappingStart;
+    }
+
+    public void finish(int pageSize, int rowsReturned) {
+        end();
+        if (shouldCommit()) {
+            this.pageSize = pageSize;
+            this.rowsReturned = rowsReturned;
+            this.sqlCount = (int) (SqlStatementCounter.count() - sqlBefore);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.fabio.libraryapi.diagnostics;
+
+import com.fabio.libraryapi.entity.Book;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.springframework.data.domain.Pageable;
+
+import java.util.StringJoiner;
+
+//evento do jfr para cada operacao do BookServiceImpl
+@Name("com.fabio.libraryapi.BookService")
+@Label("Book Service Operation")
+@Category({"Library API", "Service"})
+public class BookServiceEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Filter Shape")
+    @Description("Campos usados no filtro e ordenacao, sem os valores")
+    String filterShape;
+
+    @Label("Page Size")
+    int pageSize;
+
+    @Label("Rows Returned")
+    int rowsReturned;
+
+    @Label("SQL Count")
+    int sqlCount;
+
+    private transient long sqlBefore;
+
+    public static BookServiceEvent start(String operation) {
+        BookServiceEvent event = new BookServiceEvent();
+        event.operation = operation;
+        event.sqlBefore = SqlStatementCounter.count();
+        event.begin();
+        return event;
+    }
+
+    public BookServiceEvent filter(Book filter, Pageable pageable) {
+        if (isEnabled()) {
+            this.filterShape = shape(filter, pageable);
+            this.pageSize = pageable.isPaged() ? pageable.getPageSize() : -1;
+        }
+        return this;
+    }
+
+    public void finish(int rowsReturned) {
+        end();
+        if (shouldCommit()) {
+            this.rowsReturned = rowsReturned;
+            this.sqlCount = (int) (SqlStatementCounter.count() - sqlBefore);
+            commit();
+        }
+    }
+
+    //ex: "title+author sort=title" -- apenas os nomes dos campos
+    static String shape(Book filter, Pageable pageable) {
+        StringJoiner fields = new StringJoiner("+");
+        if (filter.getTitle() != null) {
+            fields.add("title");
+        }
+        if (filter.getAuthor() != null) {
+            fields.add("author");
+        }
+        if (filter.getIsbn() != null) {
+            fields.add("isbn");
+        }
+        String shape = fields.length() == 0 ? "none" : fields.toString();
+        if (pageable.getSort().isSorted()) {
+            StringJoiner sort = new StringJoiner(",");
+            pageable.getSort().forEach(order -> sort.add(order.getProperty() + (order.isDescending() ? " desc" : "")));
+            shape += " sort=" + sort;
+        }
+        return shape;
+    }
+}
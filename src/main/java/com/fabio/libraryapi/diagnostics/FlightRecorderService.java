@@ -0,0 +1,149 @@
+package com.fabio.libraryapi.diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.management.jfr.FlightRecorderMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//gravacao continua do jfr com o perfil "default" (baixo overhead), sempre ligada por padrao
+//e limitada a max-age-minutes e max-size-mb no disco.
+//os ultimos minutos podem ser salvos em um arquivo .jfr a qualquer momento;
+//apenas os ultimos "max-dumps" arquivos ficam no diretorio.
+@Component
+public class FlightRecorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderService.class);
+    static final String RECORDING_NAME = "library-api-continuous";
+    static final String DUMP_PREFIX = "library-api-";
+
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final long maxSize;
+    private final int maxDumps;
+    private final Path directory;
+    private Recording recording;
+    private long lastDump;
+
+    public FlightRecorderService(@Value("${library.jfr.enabled:true}") boolean enabled,
+                                 @Value("${library.jfr.max-age-minutes:30}") long maxAgeMinutes,
+                                 @Value("${library.jfr.max-size-mb:100}") long maxSizeMb,
+                                 @Value("${library.jfr.max-dumps:5}") int maxDumps,
+                                 @Value("${library.jfr.dump-dir:${java.io.tmpdir}/library-jfr}") String directory) {
+        this.enabled = enabled;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.maxSize = maxSizeMb * 1024 * 1024;
+        this.maxDumps = maxDumps;
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void start() throws IOException, ParseException {
+        if (!enabled) {
+            return;
+        }
+        recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName(RECORDING_NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSize);
+        recording.start();
+        log.info("Gravacao continua do JFR iniciada (ultimos {} minutos)", maxAge.toMinutes());
+    }
+
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    //salva apenas o intervalo pedido da gravacao continua.
+    //um dump por vez: cada um le o repositorio inteiro do jfr
+    public synchronized Path dump(Duration window) throws IOException {
+        if (!isRunning()) {
+            throw new IllegalStateException("Gravacao continua do JFR desligada.");
+        }
+        Files.createDirectories(directory);
+        Instant end = Instant.now();
+        Instant start = end.minus(window);
+        //nome crescente mesmo com dois dumps no mesmo milissegundo
+        lastDump = Math.max(end.toEpochMilli(), lastDump + 1);
+        Path file = directory.resolve(DUMP_PREFIX + lastDump + ".jfr");
+
+        FlightRecorderMXBean bean = ManagementFactory.getPlatformMXBean(FlightRecorderMXBean.class);
+        long snapshot = bean.takeSnapshot();
+        try {
+            Map<String, String> options = new HashMap<>();
+            options.put("startTime", String.valueOf(start.toEpochMilli()));
+            options.put("endTime", String.valueOf(end.toEpochMilli()));
+            long stream = bean.openStream(snapshot, options);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                byte[] block;
+                while ((block = bean.readStream(stream)) != null) {
+                    out.write(block);
+                }
+            } finally {
+                bean.closeStream(stream);
+            }
+        } finally {
+            bean.closeRecording(snapshot);
+        }
+        deleteOldDumps();
+        return file;
+    }
+
+    //o nome tem o instante do dump, entao a ordem dos nomes e a ordem de criacao
+    private void deleteOldDumps() throws IOException {
+        List<Path> dumps;
+        try (Stream<Path> files = Files.list(directory)) {
+            dumps = files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(DUMP_PREFIX) && name.endsWith(".jfr");
+                    })
+                    .sorted(Comparator.comparingLong(FlightRecorderService::dumpTime).reversed())
+                    .collect(Collectors.toList());
+        }
+        for (Path old : dumps.subList(Math.min(maxDumps, dumps.size()), dumps.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    private static long dumpTime(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(DUMP_PREFIX.length(), name.length() - ".jfr".length()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.fabio.libraryapi.diagnostics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//conta os comandos sql preparados pelo hibernate em cada thread.
+//registrado em hibernate.session_factory.statement_inspector.
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    public static long count() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -12,11 +14,16 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+//o save consulta o isbn antes de inserir, sem indice isso vira uma varredura da tabela
+@Table(indexes = @Index(name = "idx_book_isbn", columnList = "isbn"))
 public class Book {
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "book-id")
+    @GenericGenerator(name = "book-id", strategy = "com.fabio.libraryapi.sharding.ShardedIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "book_seq"),
+            @Parameter(name = "increment_size", value = "50")
+    })
     private Long    id;
     @Column
     private String  title;
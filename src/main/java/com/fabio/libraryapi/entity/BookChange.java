@@ -0,0 +1,45 @@
+package com.fabio.libraryapi.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+//registro de cada alteracao feita em um livro.
+//a sequencia vem do BookChangeCounter: em cada shard ela e continua (1, 2, 3...)
+//e segue a ordem dos commits, entao serve de token para o feed de alteracoes.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "book_change")
+public class BookChange {
+    @Id
+    @Column
+    private Long            sequence;
+    @Column(nullable = false)
+    private Long            bookId;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private BookChangeType  type;
+    //no DELETE os campos abaixo guardam o ultimo estado do livro (tombstone)
+    @Column
+    private String          title;
+    @Column
+    private String          author;
+    @Column
+    private String          isbn;
+
+    public static BookChange of(BookChangeType type, Book book) {
+        return BookChange.builder()
+                .type(type)
+                .bookId(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.fabio.libraryapi.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+//ultima sequencia usada no feed de alteracoes deste banco (uma linha por shard).
+//a linha fica travada ate o commit de quem escreveu, entao as sequencias
+//saem continuas e na mesma ordem em que as transacoes terminam.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "book_change_counter")
+public class BookChangeCounter {
+    public static final int ID = 1;
+
+    @Id
+    @Column
+    private Integer id;
+    @Column(nullable = false)
+    private Long    lastSequence;
+}
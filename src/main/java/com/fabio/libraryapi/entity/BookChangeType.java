@@ -0,0 +1,7 @@
+package com.fabio.libraryapi.entity;
+
+public enum BookChangeType {
+    SAVE,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,87 @@
+package com.fabio.libraryapi.entity;
+
+import com.fabio.libraryapi.service.export.ExportFormat;
+import com.fabio.libraryapi.service.export.ExportStatus;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+//exportacao do catalogo executada em segundo plano.
+//fica no banco para qualquer instancia responder o status e servir o arquivo,
+//que e gravado no diretorio compartilhado library.exports.dir.
+//os campos mudam na thread da exportacao e sao lidos pelas requisicoes de status.
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "export_job")
+public class ExportJob {
+    static final int MAX_ERROR = 1000;
+
+    @Id
+    @Column(length = 36)
+    private String                  id;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ExportFormat            format;
+    @Column(nullable = false)
+    private String                  fileName;
+    @Column(nullable = false)
+    private Instant                 createdAt;
+    //muda enquanto a instancia dona da exportacao esta viva
+    @Column(nullable = false)
+    private volatile Instant        updatedAt;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private volatile ExportStatus   status;
+    //token do feed (uma posicao por shard) a partir do qual o parceiro
+    //continua por /api/books/changes?since=
+    @Column
+    private volatile String         changeToken;
+    @Column(name = "row_count")
+    private volatile long           rows;
+    @Column(name = "file_size")
+    private volatile long           size;
+    @Column(length = MAX_ERROR)
+    private volatile String         error;
+
+    public ExportJob(String id, ExportFormat format) {
+        this.id = id;
+        this.format = format;
+        this.fileName = format.getFileName(id);
+        this.createdAt = Instant.now();
+        this.updatedAt = createdAt;
+        this.status = ExportStatus.PENDING;
+    }
+
+    public void running(String changeToken) {
+        this.changeToken = changeToken;
+        this.status = ExportStatus.RUNNING;
+        touch();
+    }
+
+    public void progress(long rows) {
+        this.rows = rows;
+    }
+
+    public void done(long size) {
+        this.size = size;
+        this.status = ExportStatus.DONE;
+        touch();
+    }
+
+    public void failed(String error) {
+        this.error = error != null && error.length() > MAX_ERROR ? error.substring(0, MAX_ERROR) : error;
+        this.status = ExportStatus.FAILED;
+        touch();
+    }
+
+    public void touch() {
+        this.updatedAt = Instant.now();
+    }
+
+    public boolean isDone() {
+        return status == ExportStatus.DONE;
+    }
+}
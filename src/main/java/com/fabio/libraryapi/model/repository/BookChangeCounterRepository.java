@@ -0,0 +1,18 @@
+package com.fabio.libraryapi.model.repository;
+
+import com.fabio.libraryapi.entity.BookChangeCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+public interface BookChangeCounterRepository extends JpaRepository<BookChangeCounter,Integer> {
+
+    //select ... for update: a proxima escrita espera o commit desta
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from BookChangeCounter c where c.id = :id")
+    Optional<BookChangeCounter> lockById(@Param("id") Integer id);
+}
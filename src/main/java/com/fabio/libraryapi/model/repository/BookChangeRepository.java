@@ -0,0 +1,19 @@
+package com.fabio.libraryapi.model.repository;
+
+import com.fabio.libraryapi.entity.BookChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+
+public interface BookChangeRepository extends JpaRepository<BookChange,Long> {
+
+    //paginacao por chave: busca apenas o que veio depois do token informado
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+    List<BookChange> findBySequenceGreaterThanOrderBySequenceAsc(Long sequence, Pageable pageable);
+
+    Optional<BookChange> findTopByOrderBySequenceDesc();
+}
@@ -1,10 +1,28 @@
 package com.fabio.libraryapi.model.repository;
 
 import com.fabio.libraryapi.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
 
 public interface BookRepository extends JpaRepository<Book,Long> {
 
     //por padrao retorna false.
     boolean existsByIsbn(String isbn);
+
+    //leituras do controller: as entidades voltam somente leitura, sem copia para o dirty check
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+    Optional<Book> findById(Long id);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+    <S extends Book> Page<S> findAll(Example<S> example, Pageable pageable);
+
+    //paginacao por chave: percorre a tabela inteira sem usar offset
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
@@ -0,0 +1,23 @@
+package com.fabio.libraryapi.model.repository;
+
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.service.export.ExportFormat;
+import com.fabio.libraryapi.service.export.ExportStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ExportJobRepository extends JpaRepository<ExportJob,String> {
+
+    Optional<ExportJob> findFirstByFormatAndStatusInOrderByCreatedAtDesc(ExportFormat format, Collection<ExportStatus> statuses);
+
+    Optional<ExportJob> findFirstByFormatAndStatusAndCreatedAtAfterOrderByCreatedAtDesc(ExportFormat format, ExportStatus status, Instant after);
+
+    //exportacoes que pararam de dar sinal: a instancia que rodava caiu
+    List<ExportJob> findByStatusInAndUpdatedAtBefore(Collection<ExportStatus> statuses, Instant before);
+
+    List<ExportJob> findByStatusInOrderByCreatedAtDesc(Collection<ExportStatus> statuses);
+}
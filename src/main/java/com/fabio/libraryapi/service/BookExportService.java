@@ -0,0 +1,15 @@
+package com.fabio.libraryapi.service;
+
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.service.export.ExportFormat;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface BookExportService {
+    ExportJob start(ExportFormat format);
+
+    Optional<ExportJob> getById(String id);
+
+    Path fileOf(ExportJob job);
+}
@@ -1,9 +1,11 @@
 package com.fabio.libraryapi.service;
 
 import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.service.feed.ChangeFeed;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
@@ -11,9 +13,16 @@ public interface BookService {
 
     Optional<Book> getById(long id);
 
+    //busca para alterar ou remover: nao conta como acesso na popularidade
+    Optional<Book> getByIdForUpdate(long id);
+
     void delete(Book book);
 
     Book update(Book book);
 
     Page<Book> find(Book filter, Pageable pageRequest);
+
+    ChangeFeed changes(String since, int limit);
+
+    List<String> suggest(String prefix, int limit);
 }
@@ -0,0 +1,136 @@
+package com.fabio.libraryapi.service.cache;
+
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.service.invalidation.BookInvalidationListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//cache negativo: guarda ids que ja sabemos que nao existem na base,
+//para que buscas repetidas por ids inexistentes nao cheguem no banco.
+//nenhuma operacao trava: a consulta e um get no ConcurrentHashMap.
+//passando da capacidade, uma unica thread descarta primeiro os expirados e depois
+//quaisquer outros (aproximado, sem ordem de uso). cada entrada expira depois do
+//ttl caso alguma invalidacao se perca.
+@Component
+public class MissingBookCache implements BookInvalidationListener {
+
+    private static final int STRIPES = 64;
+
+    private final Map<Long, Entry> missing = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long ttlMillis;
+    //geracao de cada faixa de ids, muda a cada invalidacao. uma consulta que
+    //comecou antes da invalidacao nao pode marcar o id como ausente depois dela
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public MissingBookCache(@Value("${library.missing-books.capacity:10000}") int capacity,
+                            @Value("${library.missing-books.ttl-ms:60000}") long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public boolean isMissing(long id) {
+        Entry entry = missing.get(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expired(System.currentTimeMillis())) {
+            missing.remove(id, entry);
+            return false;
+        }
+        return true;
+    }
+
+    //chamado antes de consultar a base
+    public long stamp(long id) {
+        return generations.get(stripe(id));
+    }
+
+    //so fica marcado se nada invalidou o id desde o stamp. a geracao e conferida
+    //depois do put: se o invalidate veio antes da conferencia, a entrada sai aqui;
+    //se veio depois, o proprio invalidate remove
+    public void markMissing(long id, long stamp) {
+        int stripe = stripe(id);
+        if (generations.get(stripe) != stamp) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis() + ttlMillis);
+        missing.put(id, entry);
+        if (generations.get(stripe) != stamp) {
+            missing.remove(id, entry);
+            return;
+        }
+        if (missing.size() > capacity) {
+            evict(id);
+        }
+    }
+
+    public void invalidate(long id) {
+        generations.incrementAndGet(stripe(id));
+        missing.remove(id);
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+        missing.clear();
+    }
+
+    public int size() {
+        return missing.size();
+    }
+
+    @Override
+    public void onChange(int shard, BookChange change) {
+        invalidate(change.getBookId());
+    }
+
+    @Override
+    public void onResync() {
+        clear();
+    }
+
+    //o id que acabou de entrar fica de fora
+    private void evict(long keep) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            missing.values().removeIf(entry -> entry.expired(now));
+            Iterator<Long> it = missing.keySet().iterator();
+            while (missing.size() > capacity && it.hasNext()) {
+                if (it.next() != keep) {
+                    it.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int) (id ^ (id >>> 32)) & (STRIPES - 1);
+    }
+
+    //comparado por identidade: remove(id, entry) nunca apaga a marcacao de outra consulta
+    private static final class Entry {
+        private final long expiresAt;
+
+        private Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean expired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
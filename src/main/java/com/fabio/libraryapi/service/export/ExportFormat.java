@@ -0,0 +1,17 @@
+package com.fabio.libraryapi.service.export;
+
+public enum ExportFormat {
+    NDJSON("ndjson"),
+    CSV("csv");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    //os arquivos sao sempre gravados compactados com gzip
+    public String getFileName(String jobId) {
+        return "books-" + jobId + "." + extension + ".gz";
+    }
+}
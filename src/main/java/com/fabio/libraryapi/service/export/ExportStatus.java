@@ -0,0 +1,8 @@
+package com.fabio.libraryapi.service.export;
+
+public enum ExportStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+}
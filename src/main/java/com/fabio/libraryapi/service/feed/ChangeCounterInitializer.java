@@ -0,0 +1,46 @@
+package com.fabio.libraryapi.service.feed;
+
+import com.fabio.libraryapi.entity.BookChangeCounter;
+import com.fabio.libraryapi.model.repository.BookChangeCounterRepository;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+//cria a linha do contador do feed em cada shard antes da primeira escrita.
+//sem a linha o select ... for update nao trava nada e duas escritas simultaneas
+//tentariam criar o mesmo contador. o schema-sharded.sql ja faz o mesmo.
+@Component
+public class ChangeCounterInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeCounterInitializer.class);
+
+    private final BookChangeCounterRepository counterRepository;
+    private final BookShardRouter shards;
+
+    public ChangeCounterInitializer(BookChangeCounterRepository counterRepository, BookShardRouter shards) {
+        this.counterRepository = counterRepository;
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void seed() {
+        shards.forEachShard(this::seedShard);
+    }
+
+    private void seedShard(int shard) {
+        if (counterRepository.existsById(BookChangeCounter.ID)) {
+            return;
+        }
+        try {
+            counterRepository.saveAndFlush(new BookChangeCounter(BookChangeCounter.ID, 0L));
+            log.info("Contador do feed de alteracoes criado no shard {}", shard);
+        } catch (DataIntegrityViolationException ex) {
+            //outra instancia subindo junto criou primeiro
+            log.debug("Contador do feed de alteracoes ja existe no shard {}", shard);
+        }
+    }
+}
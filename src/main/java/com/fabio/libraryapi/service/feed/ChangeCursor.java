@@ -0,0 +1,63 @@
+package com.fabio.libraryapi.service.feed;
+
+import com.fabio.libraryapi.exception.BusinessException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+//posicao do cliente no feed: a ultima sequencia lida em cada shard.
+//vai para o cliente como texto, "12" com um shard e "12.40.7" com tres.
+public final class ChangeCursor {
+
+    private static final String SEPARATOR = ".";
+
+    private final long[] sequences;
+
+    private ChangeCursor(long[] sequences) {
+        this.sequences = sequences;
+    }
+
+    public static ChangeCursor start(int shards) {
+        return new ChangeCursor(new long[shards]);
+    }
+
+    //posicao com a ultima sequencia conhecida de cada shard, na ordem dos shards
+    public static ChangeCursor of(long[] sequences) {
+        return new ChangeCursor(sequences.clone());
+    }
+
+    //"0" (ou vazio) sempre vale como inicio do feed
+    public static ChangeCursor parse(String token, int shards) {
+        if (token == null || token.isBlank() || token.trim().equals("0")) {
+            return start(shards);
+        }
+        String[] parts = token.trim().split("\\" + SEPARATOR);
+        if (parts.length != shards) {
+            throw new BusinessException("Token do feed invalido.");
+        }
+        long[] sequences = new long[shards];
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                sequences[shard] = Long.parseLong(parts[shard]);
+            }
+        } catch (NumberFormatException ex) {
+            throw new BusinessException("Token do feed invalido.");
+        }
+        return new ChangeCursor(sequences);
+    }
+
+    public long get(int shard) {
+        return sequences[shard];
+    }
+
+    public ChangeCursor advance(int shard, long sequence) {
+        long[] copy = sequences.clone();
+        copy[shard] = Math.max(copy[shard], sequence);
+        return new ChangeCursor(copy);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.stream(sequences).mapToObj(String::valueOf).collect(Collectors.joining(SEPARATOR));
+    }
+}
@@ -0,0 +1,16 @@
+package com.fabio.libraryapi.service.feed;
+
+import com.fabio.libraryapi.entity.BookChange;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//uma pagina do feed de alteracoes e o token para pedir a proxima
+@Getter
+@AllArgsConstructor
+public class ChangeFeed {
+    private final List<BookChange>  changes;
+    private final String            next;
+    private final boolean           hasMore;
+}
@@ -0,0 +1,294 @@
+package com.fabio.libraryapi.service.impl;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.model.repository.BookRepository;
+import com.fabio.libraryapi.model.repository.ExportJobRepository;
+import com.fabio.libraryapi.service.BookExportService;
+import com.fabio.libraryapi.service.export.ExportFormat;
+import com.fabio.libraryapi.service.export.ExportStatus;
+import com.fabio.libraryapi.service.feed.ChangeCursor;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+//as exportacoes ficam na tabela export_job e os arquivos em library.exports.dir,
+//que deve ser compartilhado entre as instancias: qualquer uma responde o status
+//e serve o download. um pedido igual a uma exportacao em andamento (ou pronta ha
+//pouco) recebe a mesma exportacao em vez de ler o catalogo de novo.
+@Service
+public class BookExportServiceImpl implements BookExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookExportServiceImpl.class);
+    static final int BATCH_SIZE = 1000;
+    static final List<ExportStatus> ACTIVE = Arrays.asList(ExportStatus.PENDING, ExportStatus.RUNNING);
+    static final List<ExportStatus> FINISHED = Arrays.asList(ExportStatus.DONE, ExportStatus.FAILED);
+
+    BookRepository repository;
+    BookChangeRepository changeRepository;
+    ExportJobRepository jobRepository;
+    ObjectMapper objectMapper;
+    BookShardRouter shards;
+    Path directory;
+    int maxJobs;
+    Duration reuseWindow;
+    Duration staleAfter;
+
+    //exportacoes desta instancia ainda na fila ou rodando
+    private final Set<ExportJob> running = ConcurrentHashMap.newKeySet();
+    //uma exportacao por vez: o banco nao precisa atender varias leituras completas juntas
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BookExportServiceImpl(BookRepository repository, BookChangeRepository changeRepository,
+                                 ExportJobRepository jobRepository, ObjectMapper objectMapper, BookShardRouter shards,
+                                 @Value("${library.exports.dir:${java.io.tmpdir}/library-exports}") String directory,
+                                 @Value("${library.exports.max-jobs:10}") int maxJobs,
+                                 @Value("${library.exports.reuse-minutes:10}") long reuseMinutes,
+                                 @Value("${library.exports.stale-after-ms:300000}") long staleAfterMillis) {
+        this.repository = repository;
+        this.changeRepository = changeRepository;
+        this.jobRepository = jobRepository;
+        this.objectMapper = objectMapper;
+        this.shards = shards;
+        this.directory = Paths.get(directory);
+        this.maxJobs = maxJobs;
+        this.reuseWindow = Duration.ofMinutes(reuseMinutes);
+        this.staleAfter = Duration.ofMillis(staleAfterMillis);
+    }
+
+    @Override
+    public synchronized ExportJob start(ExportFormat format) {
+        failStaleJobs();
+        Optional<ExportJob> current = reusable(format);
+        if (current.isPresent()) {
+            return current.get();
+        }
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), format);
+        store(job);
+        running.add(job);
+        executor.submit(() -> run(job));
+        return job;
+    }
+
+    @Override
+    public Optional<ExportJob> getById(String id) {
+        return jobRepository.findById(id);
+    }
+
+    @Override
+    public Path fileOf(ExportJob job) {
+        return directory.resolve(job.getFileName());
+    }
+
+    //na subida: marca como falha o que uma instancia morta deixou rodando e apaga
+    //os arquivos sem exportacao pronta (restos de escrita ou de exportacoes removidas)
+    @PostConstruct
+    public void cleanUp() {
+        failStaleJobs();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant limit = Instant.now().minus(staleAfter);
+        //o arquivo pronto aparece um pouco antes da exportacao virar DONE,
+        //por isso so apaga o que esta parado ha mais que o limite
+        Set<String> kept = jobRepository.findByStatusInOrderByCreatedAtDesc(FINISHED).stream()
+                .filter(ExportJob::isDone)
+                .map(ExportJob::getFileName)
+                .collect(Collectors.toSet());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "books-*")) {
+            for (Path file : files) {
+                if (!kept.contains(file.getFileName().toString())
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(limit)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Nao foi possivel limpar {}", directory, ex);
+        }
+    }
+
+    //sinal de vida das exportacoes desta instancia, inclusive as que esperam na fila
+    @Scheduled(fixedDelayString = "${library.exports.heartbeat-ms:30000}")
+    public void heartbeat() {
+        for (ExportJob job : running) {
+            job.touch();
+            store(job);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void run(ExportJob job) {
+        Path tmp = null;
+        try {
+            //anota a ultima alteracao antes de ler: o que mudar durante a leitura
+            //o parceiro recebe pelo feed a partir dessa sequencia
+            job.running(latestPositions().toString());
+            store(job);
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, job.getFileName(), ".tmp");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024), StandardCharsets.UTF_8))) {
+                if (job.getFormat() == ExportFormat.CSV) {
+                    writer.write("id,title,author,isbn\n");
+                }
+                shards.forEachShard(shard -> write(job, writer));
+            }
+            Path file = fileOf(job);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.done(Files.size(file));
+            log.info("Exportacao {} concluida com {} livros", job.getId(), job.getRows());
+        } catch (Exception ex) {
+            Throwable cause = ex instanceof UncheckedIOException ? ex.getCause() : ex;
+            log.warn("Exportacao {} falhou", job.getId(), cause);
+            job.failed(cause.getMessage());
+            deleteQuietly(tmp);
+        }
+        store(job);
+        running.remove(job);
+        evictOldJobs();
+    }
+
+    //le o shard atual em paginas por id
+    private void write(ExportJob job, Writer writer) {
+        long lastId = 0;
+        List<Book> books;
+        try {
+            do {
+                books = repository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BATCH_SIZE));
+                for (Book book : books) {
+                    if (job.getFormat() == ExportFormat.CSV) {
+                        writer.write(csv(book));
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(ndjson(book)));
+                    }
+                    writer.write('\n');
+                    lastId = book.getId();
+                }
+                job.progress(job.getRows() + books.size());
+            } while (books.size() == BATCH_SIZE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    //a ultima alteracao de cada shard, no mesmo formato do token do feed
+    private ChangeCursor latestPositions() {
+        return ChangeCursor.of(shards.scatter(shard -> changeRepository.findTopByOrderBySequenceDesc()
+                        .map(BookChange::getSequence).orElse(0L))
+                .stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private Map<String, Object> ndjson(Book book) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("id", book.getId());
+        line.put("title", book.getTitle());
+        line.put("author", book.getAuthor());
+        line.put("isbn", book.getIsbn());
+        return line;
+    }
+
+    private String csv(Book book) {
+        return book.getId() + "," + csvField(book.getTitle()) + "," + csvField(book.getAuthor()) + "," + csvField(book.getIsbn());
+    }
+
+    private String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    //a mesma exportacao ja rodando, ou uma pronta ha pouco, atende o pedido
+    private Optional<ExportJob> reusable(ExportFormat format) {
+        Optional<ExportJob> active = jobRepository.findFirstByFormatAndStatusInOrderByCreatedAtDesc(format, ACTIVE);
+        if (active.isPresent()) {
+            return active;
+        }
+        return jobRepository.findFirstByFormatAndStatusAndCreatedAtAfterOrderByCreatedAtDesc(
+                format, ExportStatus.DONE, Instant.now().minus(reuseWindow));
+    }
+
+    private void failStaleJobs() {
+        List<ExportJob> stale = jobRepository.findByStatusInAndUpdatedAtBefore(ACTIVE, Instant.now().minus(staleAfter));
+        for (ExportJob job : stale) {
+            log.warn("Exportacao {} parou de responder, marcando como falha", job.getId());
+            job.failed("Exportacao interrompida.");
+            jobRepository.save(job);
+        }
+    }
+
+    //a thread da exportacao e o heartbeat gravam o mesmo job; quem grava por
+    //ultimo le os campos dentro da trava, entao o estado final nao se perde
+    private void store(ExportJob job) {
+        synchronized (job) {
+            jobRepository.save(job);
+        }
+    }
+
+    //mantem apenas as ultimas exportacoes terminadas, apagando os arquivos antigos
+    private void evictOldJobs() {
+        jobRepository.findByStatusInOrderByCreatedAtDesc(FINISHED).stream()
+                .skip(maxJobs)
+                .forEach(job -> {
+                    jobRepository.delete(job);
+                    deleteQuietly(fileOf(job));
+                });
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Nao foi possivel apagar {}", file, ex);
+        }
+    }
+}
@@ -1,68 +1,287 @@
 package com.fabio.libraryapi.service.impl;
 
+import com.fabio.libraryapi.diagnostics.BookServiceEvent;
 import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeCounter;
+import com.fabio.libraryapi.entity.BookChangeType;
 import com.fabio.libraryapi.exception.BusinessException;
+import com.fabio.libraryapi.model.repository.BookChangeCounterRepository;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
 import com.fabio.libraryapi.model.repository.BookRepository;
 import com.fabio.libraryapi.service.BookService;
+import com.fabio.libraryapi.service.cache.MissingBookCache;
+import com.fabio.libraryapi.service.feed.ChangeCursor;
+import com.fabio.libraryapi.service.feed.ChangeFeed;
+import com.fabio.libraryapi.service.invalidation.BookInvalidationBus;
+import com.fabio.libraryapi.service.suggest.BookSuggestionIndex;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import com.fabio.libraryapi.sharding.ShardContext;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+    //com sharding cada shard devolve offset + tamanho linhas, entao a pagina nao pode ir fundo demais
+    static final long MAX_SHARDED_DEPTH = 10_000;
+
 
     BookRepository repository;
+    BookChangeRepository changeRepository;
+    BookChangeCounterRepository counterRepository;
+    MissingBookCache missingBooks;
+    BookSuggestionIndex suggestions;
+    BookShardRouter shards;
+    BookInvalidationBus invalidations;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookChangeRepository changeRepository,
+                           BookChangeCounterRepository counterRepository,
+                           MissingBookCache missingBooks, BookSuggestionIndex suggestions,
+                           BookShardRouter shards, BookInvalidationBus invalidations) {
         this.repository = repository;
+        this.changeRepository = changeRepository;
+        this.counterRepository = counterRepository;
+        this.missingBooks = missingBooks;
+        this.suggestions = suggestions;
+        this.shards = shards;
+        this.invalidations = invalidations;
     }
 
     @Override
+    @Transactional
     public Book save(Book book) {
-        if(repository.existsByIsbn(book.getIsbn()))
-        {
-            throw new BusinessException("Isbn ja cadastrado.");
-        }
-        return repository.save(book);
+        //o livro e a alteracao ficam no shard do isbn, na mesma transacao
+        Book saved = ShardContext.on(shards.shardOfIsbn(book.getIsbn()), () -> {
+            if(repository.existsByIsbn(book.getIsbn()))
+            {
+                throw new BusinessException("Isbn ja cadastrado.");
+            }
+            Book entity = repository.save(book);
+            record(BookChangeType.SAVE, entity);
+            return entity;
+        });
+        //o id pode ter sido consultado antes de existir
+        missingBooks.invalidate(saved.getId());
+        return saved;
     }
 
+    //sem transacao aqui para o cache de ausentes responder sem pegar conexao do pool,
+    //o findById ja roda na transacao somente leitura do repositorio
     @Override
     public Optional<Book> getById(long id) {
-        return this.repository.findById(id);
+        return lookup(id, true);
     }
 
     @Override
+    public Optional<Book> getByIdForUpdate(long id) {
+        return lookup(id, false);
+    }
+
+    private Optional<Book> lookup(long id, boolean countHit) {
+        BookServiceEvent event = BookServiceEvent.start("getById");
+        if(missingBooks.isMissing(id))
+        {
+            event.finish(0);
+            return Optional.empty();
+        }
+        //pego antes da consulta: um save que termine no meio dela invalida o stamp
+        long stamp = missingBooks.stamp(id);
+        Optional<Book> book = ShardContext.on(shards.shardOfId(id), () -> this.repository.findById(id));
+        if(book.isEmpty())
+        {
+            missingBooks.markMissing(id, stamp);
+        }
+        else if(countHit)
+        {
+            suggestions.hit(id);
+        }
+        event.finish(book.isPresent() ? 1 : 0);
+        return book;
+    }
+
+    @Override
+    @Transactional
     public void delete(Book book) {
         if(book.getId() == null || book ==null)
         {
             throw new IllegalArgumentException("Book id cant be null");
         }
-        this.repository.delete(book);
+        ShardContext.run(shards.shardOfId(book.getId()), () -> {
+            this.repository.delete(book);
+            //tombstone: mantem o ultimo estado para quem sincroniza o catalogo
+            record(BookChangeType.DELETE, book);
+        });
     }
 
     @Override
+    @Transactional
     public Book update(Book book) {
         if(book.getId() == null || book ==null)
         {
             throw new IllegalArgumentException("Book id cant be null");
         }
-        return this.repository.save(book);
+        Book updated = ShardContext.on(shards.shardOfId(book.getId()), () -> {
+            Book entity = this.repository.save(book);
+            record(BookChangeType.UPDATE, entity);
+            return entity;
+        });
+        return updated;
     }
 
+    //somente leitura: o count e a pagina usam a mesma conexao e o hibernate nao faz dirty check
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
+        BookServiceEvent event = BookServiceEvent.start("find").filter(filter, pageRequest);
+        Page<Book> result = search(filter, pageRequest);
+        event.finish(result.getNumberOfElements());
+        return result;
+    }
+
+    private Page<Book> search(Book filter, Pageable pageRequest) {
         Example<Book> example = Example.of(filter,
                         ExampleMatcher.matching()
                         .withIgnoreCase()
                         .withIgnoreNullValues()
                         .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)
         );
-        return repository.findAll(example,pageRequest);
+        if(shards.getShards() == 1)
+        {
+            return repository.findAll(example,pageRequest);
+        }
+        //sem paginacao ou com pagina muito funda, todos os shards mandariam as linhas para a memoria
+        if(pageRequest.isUnpaged())
+        {
+            throw new BusinessException("Busca sem paginacao nao e permitida.");
+        }
+        if(pageRequest.getOffset() + pageRequest.getPageSize() > MAX_SHARDED_DEPTH)
+        {
+            throw new BusinessException("Pagina muito distante, limite de " + MAX_SHARDED_DEPTH + " livros.");
+        }
+        //cada shard devolve as primeiras linhas ate o fim da pagina pedida,
+        //a pagina final sai da juncao dessas listas na mesma ordenacao
+        Sort sort = pageRequest.getSort().and(Sort.by("id"));
+        Pageable top = PageRequest.of(0, (int) (pageRequest.getOffset() + pageRequest.getPageSize()), sort);
+        List<Page<Book>> pages = shards.scatter(shard -> repository.findAll(example, top));
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        List<Book> content = pages.stream()
+                .flatMap(page -> page.getContent().stream())
+                .sorted(comparator(sort))
+                .skip(pageRequest.getOffset())
+                .limit(pageRequest.getPageSize())
+                .collect(Collectors.toList());
+        return new PageImpl<Book>(content, pageRequest, total);
+    }
+
+    //cada shard devolve o que veio depois da sua posicao no token; as paginas sao
+    //intercaladas mantendo a ordem de cada shard, entao o token so avanca por prefixos
+    @Override
+    @Transactional(readOnly = true)
+    public ChangeFeed changes(String since, int limit) {
+        ChangeCursor cursor = ChangeCursor.parse(since, shards.getShards());
+        //um a mais por shard so para saber se ainda ha alteracoes depois desta pagina
+        List<List<BookChange>> pages = shards.scatter(shard ->
+                changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(cursor.get(shard), PageRequest.of(0, limit + 1)));
+        List<BookChange> changes = new ArrayList<>(limit);
+        int[] positions = new int[pages.size()];
+        ChangeCursor next = cursor;
+        boolean taken = true;
+        while (taken && changes.size() < limit) {
+            taken = false;
+            for (int shard = 0; shard < pages.size() && changes.size() < limit; shard++) {
+                if (positions[shard] < pages.get(shard).size()) {
+                    BookChange change = pages.get(shard).get(positions[shard]++);
+                    changes.add(change);
+                    next = next.advance(shard, change.getSequence());
+                    taken = true;
+                }
+            }
+        }
+        boolean hasMore = false;
+        for (int shard = 0; shard < pages.size(); shard++) {
+            hasMore |= positions[shard] < pages.get(shard).size();
+        }
+        return new ChangeFeed(changes, next.toString(), hasMore);
+    }
+
+    @Override
+    public List<String> suggest(String prefix, int limit) {
+        return suggestions.suggest(prefix, limit);
+    }
+
+    //mesma ordem do banco: nulos primeiro na ordem crescente
+    private Comparator<Book> comparator(Sort sort) {
+        Comparator<Book> comparator = (first, second) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Book> byProperty = Comparator.comparing((Book book) -> sortValue(book, order),
+                    Comparator.nullsFirst(Comparator.<Comparable<Object>>naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Comparable<Object> sortValue(Book book, Sort.Order order) {
+        Object value = new BeanWrapperImpl(book).getPropertyValue(order.getProperty());
+        if(value instanceof String && order.isIgnoreCase())
+        {
+            value = ((String) value).toLowerCase(Locale.ROOT);
+        }
+        return (Comparable<Object>) value;
+    }
+
+    //grava a alteracao na mesma transacao e avisa os caches de todas as instancias depois do commit
+    private void record(BookChangeType type, Book book) {
+        BookChange change = BookChange.of(type, book);
+        change.setSequence(nextSequence());
+        changeRepository.save(change);
+        //o callback roda fora do ShardContext, entao o shard e guardado agora
+        int shard = ShardContext.current();
+        afterCommit(() -> invalidations.publish(shard, change));
+    }
+
+    //trava o contador do shard ate o commit: a sequencia N+1 so existe depois que a N
+    //foi confirmada, entao quem le o feed nunca ve uma alteracao passar na frente da outra.
+    //se a transacao voltar, o contador volta junto e a sequencia e reaproveitada.
+    private long nextSequence() {
+        //a linha e criada na subida (ChangeCounterInitializer / schema-sharded.sql)
+        BookChangeCounter counter = counterRepository.lockById(BookChangeCounter.ID)
+                .orElseThrow(() -> new IllegalStateException("Contador do feed de alteracoes nao encontrado."));
+        counter.setLastSequence(counter.getLastSequence() + 1);
+        return counter.getLastSequence();
+    }
+
+    //executa a acao apenas depois do commit, quando houver transacao aberta
+    private void afterCommit(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
 
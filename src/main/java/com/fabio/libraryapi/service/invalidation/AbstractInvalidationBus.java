@@ -0,0 +1,169 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//entrega as alteracoes aos caches na ordem da sequencia de cada shard.
+//a sequencia e continua (BookChangeCounter), entao qualquer buraco e detectavel:
+//uma alteracao local que chega antes da anterior espera a que falta, e o que nao
+//chegar e lido da tabela book_change. se nem a tabela tiver, os caches sao refeitos.
+//o publish roda no afterCommit da requisicao e so entrega ou guarda: a leitura da
+//tabela e o resync ficam na thread agendada de cada transporte.
+public abstract class AbstractInvalidationBus implements BookInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractInvalidationBus.class);
+    static final int BATCH_SIZE = 500;
+
+    private final List<BookInvalidationListener> listeners;
+    protected final BookChangeRepository changeRepository;
+    protected final BookShardRouter shards;
+    private final long maxWaitMillis;
+    private final Object lock = new Object();
+    //ultima sequencia entregue aos caches em cada shard
+    private final long[] delivered;
+    //alteracoes que chegaram antes da anterior, esperando a sequencia ficar continua
+    private final List<TreeMap<Long, BookChange>> pending = new ArrayList<>();
+    private final long[] waitingSince;
+
+    protected AbstractInvalidationBus(List<BookInvalidationListener> listeners, BookChangeRepository changeRepository,
+                                      BookShardRouter shards, long maxWaitMillis) {
+        this.listeners = listeners;
+        this.changeRepository = changeRepository;
+        this.shards = shards;
+        this.maxWaitMillis = maxWaitMillis;
+        //comeca do ponto atual de cada shard; o indice de sugestoes carrega depois
+        //disso (afterSingletonsInstantiated), entao nada fica entre os dois
+        this.delivered = latestSequences();
+        this.waitingSince = new long[shards.getShards()];
+        for (int shard = 0; shard < shards.getShards(); shard++) {
+            pending.add(new TreeMap<>());
+        }
+    }
+
+    //aplica a alteracao local direto, sem esperar a leitura da tabela.
+    //nada aqui vai ao banco: a transacao da requisicao ja terminou, mas o
+    //EntityManager e a conexao (do shard de quem escreveu) ainda estao presos a thread
+    @Override
+    public void publish(int shard, BookChange change) {
+        deliver(shard, change);
+    }
+
+    //true quando alguma alteracao espera a anterior ha mais tempo que o limite
+    protected boolean hasOverdueGap() {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            for (int shard = 0; shard < delivered.length; shard++) {
+                if (!pending.get(shard).isEmpty() && now - waitingSince[shard] > maxWaitMillis) {
+                    log.warn("Alteracao {} nao chegou no shard {}, lendo da outbox", delivered[shard] + 1, shard);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //le da tabela tudo o que veio depois do que ja foi entregue
+    protected void catchUp() {
+        try {
+            shards.forEachShard(this::catchUpShard);
+        } catch (GapException ex) {
+            log.warn(ex.getMessage());
+            resync();
+            shards.forEachShard(this::catchUpShard);
+        }
+    }
+
+    protected void resync() {
+        log.warn("Ressincronizando os caches locais");
+        //o que for gravado depois daqui e entregue de novo pelo proximo catchUp
+        long[] baseline = latestSequences();
+        for (BookInvalidationListener listener : listeners) {
+            listener.onResync();
+        }
+        synchronized (lock) {
+            for (int shard = 0; shard < delivered.length; shard++) {
+                delivered[shard] = baseline[shard];
+                pending.get(shard).clear();
+                waitingSince[shard] = 0;
+            }
+        }
+    }
+
+    private void catchUpShard(int shard) {
+        long from;
+        synchronized (lock) {
+            from = delivered[shard];
+        }
+        List<BookChange> changes;
+        do {
+            changes = changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(from, PageRequest.of(0, BATCH_SIZE));
+            for (BookChange change : changes) {
+                if (change.getSequence() != from + 1) {
+                    throw new GapException("Sequencias " + (from + 1) + " a " + (change.getSequence() - 1)
+                            + " sumiram da outbox do shard " + shard);
+                }
+                deliver(shard, change);
+                from = change.getSequence();
+            }
+        } while (changes.size() == BATCH_SIZE);
+    }
+
+    private void deliver(int shard, BookChange change) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            long sequence = change.getSequence();
+            if (sequence <= delivered[shard]) {
+                return;
+            }
+            TreeMap<Long, BookChange> waiting = pending.get(shard);
+            if (sequence > delivered[shard] + 1) {
+                if (waiting.isEmpty()) {
+                    waitingSince[shard] = now;
+                }
+                waiting.put(sequence, change);
+                return;
+            }
+            dispatch(shard, change);
+            delivered[shard] = sequence;
+            while (!waiting.isEmpty() && waiting.firstKey() == delivered[shard] + 1) {
+                Map.Entry<Long, BookChange> next = waiting.pollFirstEntry();
+                dispatch(shard, next.getValue());
+                delivered[shard] = next.getKey();
+            }
+            waiting.headMap(delivered[shard], true).clear();
+            waitingSince[shard] = waiting.isEmpty() ? 0 : now;
+        }
+    }
+
+    private void dispatch(int shard, BookChange change) {
+        for (BookInvalidationListener listener : listeners) {
+            try {
+                listener.onChange(shard, change);
+            } catch (RuntimeException ex) {
+                log.warn("Falha ao aplicar a alteracao do livro {} em {}", change.getBookId(),
+                        listener.getClass().getSimpleName(), ex);
+            }
+        }
+    }
+
+    private long[] latestSequences() {
+        return shards.scatter(shard -> changeRepository.findTopByOrderBySequenceDesc()
+                        .map(BookChange::getSequence).orElse(0L))
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static class GapException extends RuntimeException {
+        private GapException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.entity.BookChange;
+
+//distribui as alteracoes de livros para os caches de todas as instancias.
+//o transporte e escolhido por library.invalidation.transport.
+public interface BookInvalidationBus {
+
+    //chamado depois do commit de uma escrita feita nesta instancia, no shard informado
+    void publish(int shard, BookChange change);
+}
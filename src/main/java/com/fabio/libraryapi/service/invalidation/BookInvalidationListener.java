@@ -0,0 +1,15 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.entity.BookChange;
+
+//cache local que precisa saber quando um livro mudou em qualquer instancia.
+//as alteracoes de cada shard chegam na ordem da sequencia, sem buracos, e o evento
+//traz o estado do livro, entao pode ser aplicado direto sem ir ao banco.
+//depois de um onResync as alteracoes seguintes podem chegar de novo, tambem em ordem.
+public interface BookInvalidationListener {
+
+    void onChange(int shard, BookChange change);
+
+    //eventos podem ter sido perdidos: descartar ou refazer tudo
+    void onResync();
+}
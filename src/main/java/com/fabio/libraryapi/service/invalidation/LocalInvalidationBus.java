@@ -0,0 +1,40 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//apenas esta instancia: para quem roda uma unica replica.
+//a tabela so e lida quando uma alteracao local deixa de chegar.
+@Component
+@ConditionalOnProperty(name = "library.invalidation.transport", havingValue = "local")
+public class LocalInvalidationBus extends AbstractInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalInvalidationBus.class);
+
+    public LocalInvalidationBus(List<BookInvalidationListener> listeners, BookChangeRepository changeRepository,
+                                BookShardRouter shards,
+                                @Value("${library.invalidation.max-wait-ms:5000}") long maxWaitMillis) {
+        super(listeners, changeRepository, shards, maxWaitMillis);
+    }
+
+    //fora da requisicao: le da tabela apenas o que esta atrasado alem do limite
+    @Scheduled(fixedDelayString = "${library.invalidation.poll-interval-ms:1000}")
+    public void recover() {
+        if (!hasOverdueGap()) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (RuntimeException ex) {
+            log.warn("Nao foi possivel ler as alteracoes atrasadas", ex);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//transporte sem broker: a tabela book_change e a outbox. cada instancia le
+//periodicamente o que foi gravado depois do que ja entregou em cada shard.
+//as escritas desta instancia sao aplicadas na hora e nao sao entregues de novo.
+@Component
+@ConditionalOnProperty(name = "library.invalidation.transport", havingValue = "outbox", matchIfMissing = true)
+public class OutboxInvalidationBus extends AbstractInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxInvalidationBus.class);
+
+    public OutboxInvalidationBus(List<BookInvalidationListener> listeners, BookChangeRepository changeRepository,
+                                 BookShardRouter shards,
+                                 @Value("${library.invalidation.max-wait-ms:5000}") long maxWaitMillis) {
+        super(listeners, changeRepository, shards, maxWaitMillis);
+    }
+
+    //tambem cobre as alteracoes locais que nao chegaram: a leitura traz a que falta
+    @Scheduled(fixedDelayString = "${library.invalidation.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            catchUp();
+        } catch (RuntimeException ex) {
+            //a posicao de cada shard nao anda, a proxima leitura continua de onde parou
+            log.warn("Nao foi possivel ler a outbox de invalidacao", ex);
+        }
+    }
+}
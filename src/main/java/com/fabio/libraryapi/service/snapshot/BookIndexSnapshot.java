@@ -0,0 +1,15 @@
+package com.fabio.libraryapi.service.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//copia dos indices em memoria junto com a ultima alteracao (book_change)
+//de cada shard que ja estava aplicada quando a copia foi feita.
+@Getter
+@AllArgsConstructor
+public class BookIndexSnapshot {
+    private final long[]            lastSequences;
+    private final List<IndexedBook> books;
+}
@@ -0,0 +1,151 @@
+package com.fabio.libraryapi.service.snapshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+//grava e le o snapshot dos indices em disco.
+//formato (versao 2): magic, versao, shards, lastSequence de cada shard, quantidade,
+//livros e crc32 no final.
+//a leitura e feita com o arquivo mapeado em memoria.
+@Component
+public class BookIndexSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BookIndexSnapshotStore.class);
+    static final int MAGIC = 0x4C494258;
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4;
+    private static final int CRC_SIZE = 8;
+
+    private final Path file;
+
+    public BookIndexSnapshotStore(@Value("${library.index.snapshot-file:}") String file) {
+        this.file = file.isBlank() ? null : Paths.get(file);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public void save(BookIndexSnapshot snapshot) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(os), crc);
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.getLastSequences().length);
+                for (long sequence : snapshot.getLastSequences()) {
+                    out.writeLong(sequence);
+                }
+                out.writeInt(snapshot.getBooks().size());
+                for (IndexedBook book : snapshot.getBooks()) {
+                    out.writeLong(book.getBookId());
+                    out.writeLong(book.getPopularity());
+                    writeString(out, book.getTitle());
+                    writeString(out, book.getAuthor());
+                }
+                out.flush();
+                //o crc cobre tudo que foi escrito antes dele
+                out.writeLong(crc.getValue());
+            }
+            //troca atomica: quem le nunca ve um arquivo pela metade
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    //retorna vazio quando nao existe snapshot ou quando ele nao pode ser usado
+    public Optional<BookIndexSnapshot> load() {
+        if (!isEnabled() || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CRC_SIZE || size > Integer.MAX_VALUE) {
+                log.warn("Snapshot {} com tamanho invalido, ignorando", file);
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (!checksumMatches(buffer, (int) size)) {
+                log.warn("Snapshot {} corrompido, ignorando", file);
+                return Optional.empty();
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Snapshot {} com formato ou versao diferente, ignorando", file);
+                return Optional.empty();
+            }
+            long[] lastSequences = new long[buffer.getInt()];
+            for (int shard = 0; shard < lastSequences.length; shard++) {
+                lastSequences[shard] = buffer.getLong();
+            }
+            int count = buffer.getInt();
+            List<IndexedBook> books = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long bookId = buffer.getLong();
+                long popularity = buffer.getLong();
+                String title = readString(buffer);
+                String author = readString(buffer);
+                books.add(new IndexedBook(bookId, title, author, popularity));
+            }
+            return Optional.of(new BookIndexSnapshot(lastSequences, books));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException ex) {
+            log.warn("Nao foi possivel ler o snapshot {}", file, ex);
+            return Optional.empty();
+        }
+    }
+
+    private boolean checksumMatches(ByteBuffer buffer, int size) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(size - CRC_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue() == buffer.getLong(size - CRC_SIZE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,14 @@
+package com.fabio.libraryapi.service.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//estado de um livro dentro dos indices em memoria
+@Getter
+@AllArgsConstructor
+public class IndexedBook {
+    private final long      bookId;
+    private final String    title;
+    private final String    author;
+    private final long      popularity;
+}
@@ -0,0 +1,524 @@
+package com.fabio.libraryapi.service.suggest;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.service.snapshot.IndexedBook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+//indice em memoria para o autocomplete de titulos e autores.
+//e uma trie compactada (radix) sobre os textos normalizados: cada no guarda
+//um trecho do texto e os "topK" termos mais populares abaixo dele, entao a
+//consulta custa apenas o tamanho do prefixo, nao importa quantos livros existam.
+//os filhos ficam em arrays ordenados pelo primeiro caractere, sem um mapa por no.
+//os acessos sao contados sem trava e somados na trie de tempos em tempos.
+@Component
+public class BookSuggestionIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Comparator<Term> BY_POPULARITY = Comparator
+            .comparingLong((Term term) -> term.popularity).reversed()
+            .thenComparing(term -> term.key);
+
+    private final int topK;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Tree tree = new Tree();
+    //acessos ainda nao somados na trie, por livro
+    private final Map<Long, LongAdder> pendingHits = new ConcurrentHashMap<>();
+
+    public BookSuggestionIndex(@Value("${library.suggest.top-k:10}") int topK) {
+        this.topK = topK;
+    }
+
+    //inclui o livro ou troca o titulo/autor que ele tinha antes
+    public void put(Book book) {
+        lock.writeLock().lock();
+        try {
+            tree.put(book, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long bookId) {
+        pendingHits.remove(bookId);
+        lock.writeLock().lock();
+        try {
+            tree.remove(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //contador de popularidade: soma um acesso ao titulo e ao autor do livro.
+    //roda em toda consulta por id, entao apenas acumula; o foldHits aplica
+    public void hit(long bookId) {
+        pendingHits.computeIfAbsent(bookId, id -> new LongAdder()).increment();
+    }
+
+    //aplica os acessos acumulados de uma vez, reordenando cada termo uma unica vez.
+    //um acesso que chegue enquanto o contador ocioso e descartado pode se perder
+    @Scheduled(fixedDelayString = "${library.suggest.fold-interval-ms:1000}")
+    public void foldHits() {
+        Map<Long, Long> hits = new HashMap<>();
+        pendingHits.forEach((bookId, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                hits.put(bookId, count);
+            } else {
+                pendingHits.remove(bookId, adder);
+            }
+        });
+        if (hits.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            tree.fold(hits);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return tree.suggest(key, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            tree = new Tree();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //copia de todos os livros indexados, com a popularidade de cada um
+    public List<IndexedBook> entries() {
+        foldHits();
+        lock.readLock().lock();
+        try {
+            List<IndexedBook> list = new ArrayList<>(tree.books.size());
+            for (Entry entry : tree.books.values()) {
+                list.add(new IndexedBook(entry.bookId, text(entry.title), text(entry.author), entry.popularity));
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //volta um livro vindo do snapshot, mantendo a popularidade que ele tinha
+    public void restore(IndexedBook book) {
+        lock.writeLock().lock();
+        try {
+            tree.put(Book.builder().id(book.getBookId()).title(book.getTitle()).author(book.getAuthor()).build(),
+                    book.getPopularity());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //monta um indice novo sem travar as consultas; o atual continua respondendo
+    //ate o finish, que troca os dois de uma vez
+    public Rebuild rebuild() {
+        return new Rebuild();
+    }
+
+    public class Rebuild {
+        private final Tree next = new Tree();
+
+        private Rebuild() {
+        }
+
+        //a popularidade vem do indice atual, os acessos feitos durante a montagem se perdem
+        public void put(Book book) {
+            Long popularity;
+            lock.readLock().lock();
+            try {
+                Entry current = tree.books.get(book.getId());
+                popularity = current == null ? null : current.popularity;
+            } finally {
+                lock.readLock().unlock();
+            }
+            next.put(book, popularity);
+        }
+
+        public void finish() {
+            lock.writeLock().lock();
+            try {
+                tree = next;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static String text(Term term) {
+        return term == null ? null : term.text;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutMarks = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(withoutMarks.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    //a trie com os termos e os livros; quem chama segura a trava
+    private class Tree {
+        private final Node root = new Node("");
+        private final Map<String, Term> terms = new HashMap<>();
+        private final Map<Long, Entry> books = new HashMap<>();
+
+        //sem popularidade informada, o livro mantem a que ja tinha
+        private void put(Book book, Long popularity) {
+            Entry old = books.remove(book.getId());
+            long current = 0;
+            if (old != null) {
+                current = old.popularity;
+                increase(old.title, -current);
+                increase(old.author, -current);
+                release(old);
+            }
+            if (popularity != null) {
+                current = popularity;
+            }
+            Entry entry = new Entry(book.getId(), acquire(book.getTitle()), acquire(book.getAuthor()), current);
+            books.put(book.getId(), entry);
+            increase(entry.title, current);
+            increase(entry.author, current);
+        }
+
+        private void remove(long bookId) {
+            Entry old = books.remove(bookId);
+            if (old != null) {
+                increase(old.title, -old.popularity);
+                increase(old.author, -old.popularity);
+                release(old);
+            }
+        }
+
+        private void fold(Map<Long, Long> hits) {
+            Map<Term, Long> deltas = new HashMap<>();
+            hits.forEach((bookId, count) -> {
+                Entry entry = books.get(bookId);
+                if (entry == null) {
+                    return;
+                }
+                entry.popularity += count;
+                if (entry.title != null) {
+                    deltas.merge(entry.title, count, Long::sum);
+                }
+                if (entry.author != null) {
+                    deltas.merge(entry.author, count, Long::sum);
+                }
+            });
+            deltas.forEach(this::increase);
+        }
+
+        private List<String> suggest(String key, int limit) {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) {
+                    return Collections.emptyList();
+                }
+                int matched = common(child.label, key, i);
+                //o prefixo pode terminar no meio do trecho do no
+                if (matched < child.label.length() && i + matched < key.length()) {
+                    return Collections.emptyList();
+                }
+                i += matched;
+                node = child;
+            }
+            return Arrays.stream(node.top)
+                    .limit(limit)
+                    .map(term -> term.text)
+                    .collect(Collectors.toList());
+        }
+
+        private Term acquire(String text) {
+            String key = normalize(text);
+            if (key.isEmpty()) {
+                return null;
+            }
+            Term term = terms.get(key);
+            if (term == null) {
+                term = new Term(key, text.trim());
+                terms.put(key, term);
+                insert(term);
+            }
+            term.books++;
+            return term;
+        }
+
+        private void release(Entry entry) {
+            release(entry.title);
+            release(entry.author);
+        }
+
+        private void release(Term term) {
+            if (term == null || --term.books > 0) {
+                return;
+            }
+            terms.remove(term.key);
+            List<Node> path = path(term.key, false);
+            path.get(path.size() - 1).term = null;
+            //refaz o topK de baixo para cima, remove os nos vazios e junta
+            //com o filho os nos que ficaram com um filho so
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node node = path.get(i);
+                recompute(node);
+                if (i == 0 || node.term != null) {
+                    continue;
+                }
+                Node parent = path.get(i - 1);
+                if (node.children.length == 0) {
+                    parent.removeChild(node.label.charAt(0));
+                } else if (node.children.length == 1) {
+                    Node child = node.children[0];
+                    child.label = node.label + child.label;
+                    parent.replaceChild(child);
+                }
+            }
+        }
+
+        private void insert(Term term) {
+            List<Node> path = path(term.key, true);
+            path.get(path.size() - 1).term = term;
+            for (Node node : path) {
+                offer(node, term);
+            }
+        }
+
+        private void increase(Term term, long delta) {
+            if (term == null || delta == 0) {
+                return;
+            }
+            term.popularity += delta;
+            List<Node> path = path(term.key, false);
+            if (delta > 0) {
+                for (Node node : path) {
+                    offer(node, term);
+                }
+                return;
+            }
+            //ao diminuir, outro termo pode entrar no topK: refaz de baixo para cima
+            for (int i = path.size() - 1; i >= 0; i--) {
+                recompute(path.get(i));
+            }
+        }
+
+        //nos do caminho ate o termo; ao criar, quebra o trecho de um no
+        //quando o termo diverge (ou termina) no meio dele
+        private List<Node> path(String key, boolean create) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            path.add(node);
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) {
+                    if (!create) {
+                        throw new IllegalStateException("Termo nao indexado: " + key);
+                    }
+                    child = new Node(key.substring(i));
+                    node.addChild(child);
+                    path.add(child);
+                    return path;
+                }
+                int matched = common(child.label, key, i);
+                if (matched < child.label.length()) {
+                    if (!create) {
+                        throw new IllegalStateException("Termo nao indexado: " + key);
+                    }
+                    child = split(node, child, matched);
+                }
+                i += matched;
+                node = child;
+                path.add(node);
+            }
+            return path;
+        }
+
+        //o no do meio fica com o inicio do trecho e tem os mesmos termos abaixo dele
+        private Node split(Node parent, Node child, int at) {
+            Node middle = new Node(child.label.substring(0, at));
+            child.label = child.label.substring(at);
+            middle.keys = new char[]{child.label.charAt(0)};
+            middle.children = new Node[]{child};
+            middle.top = child.top.clone();
+            parent.replaceChild(middle);
+            return middle;
+        }
+
+        //a popularidade so aumenta aqui, entao basta subir o termo no topK
+        private void offer(Node node, Term term) {
+            Term[] top = node.top;
+            int at = indexOf(top, term);
+            if (at < 0) {
+                if (top.length == topK && BY_POPULARITY.compare(term, top[topK - 1]) > 0) {
+                    return;
+                }
+                top = Arrays.copyOf(top, Math.min(top.length + 1, topK));
+                at = top.length - 1;
+                top[at] = term;
+            }
+            while (at > 0 && BY_POPULARITY.compare(top[at], top[at - 1]) < 0) {
+                Term previous = top[at - 1];
+                top[at - 1] = top[at];
+                top[at] = previous;
+                at--;
+            }
+            node.top = top;
+        }
+
+        private void recompute(Node node) {
+            List<Term> candidates = new ArrayList<>();
+            if (node.term != null) {
+                candidates.add(node.term);
+            }
+            for (Node child : node.children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(BY_POPULARITY);
+            node.top = candidates.subList(0, Math.min(topK, candidates.size())).toArray(new Term[0]);
+        }
+    }
+
+    //quantos caracteres do trecho batem com a chave a partir de "from"
+    private static int common(String label, String key, int from) {
+        int max = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(Term[] top, Term term) {
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == term) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Term[] NO_TERMS = new Term[0];
+
+        //trecho do texto entre o pai e este no; o primeiro caractere e a chave no pai
+        private String label;
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private Term[] top = NO_TERMS;
+        private Term term;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node child(char key) {
+            int at = Arrays.binarySearch(keys, key);
+            return at >= 0 ? children[at] : null;
+        }
+
+        private void addChild(Node child) {
+            int at = -(Arrays.binarySearch(keys, child.label.charAt(0)) + 1);
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = child.label.charAt(0);
+            newChildren[at] = child;
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        //troca o filho que comeca com o mesmo caractere
+        private void replaceChild(Node child) {
+            children[Arrays.binarySearch(keys, child.label.charAt(0))] = child;
+        }
+
+        private void removeChild(char key) {
+            int at = Arrays.binarySearch(keys, key);
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+            System.arraycopy(children, at + 1, newChildren, at, children.length - at - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+
+    private static class Term {
+        private final String key;
+        private final String text;
+        private long popularity;
+        private int books;
+
+        private Term(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private static class Entry {
+        private final long bookId;
+        private final Term title;
+        private final Term author;
+        private long popularity;
+
+        private Entry(long bookId, Term title, Term author, long popularity) {
+            this.bookId = bookId;
+            this.title = title;
+            this.author = author;
+            this.popularity = popularity;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.fabio.libraryapi.service.suggest;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeType;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.model.repository.BookRepository;
+import com.fabio.libraryapi.service.invalidation.BookInvalidationListener;
+import com.fabio.libraryapi.service.snapshot.BookIndexSnapshot;
+import com.fabio.libraryapi.service.snapshot.BookIndexSnapshotStore;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+//monta o indice de sugestoes na subida da aplicacao, antes de aceitar requisicoes.
+//quando existe snapshot em disco, carrega ele e aplica apenas as alteracoes
+//registradas depois dele; sem snapshot, le a tabela em paginas por id.
+//depois disso mantem o indice atualizado com as alteracoes de todas as instancias.
+@Component
+public class BookSuggestionIndexLoader implements BookInvalidationListener, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSuggestionIndexLoader.class);
+    static final int BATCH_SIZE = 1000;
+
+    private final BookRepository repository;
+    private final BookChangeRepository changeRepository;
+    private final BookSuggestionIndex index;
+    private final BookIndexSnapshotStore snapshotStore;
+    private final BookShardRouter shards;
+    //ultima alteracao de cada shard que com certeza ja esta no indice
+    private final AtomicLongArray applied;
+
+    public BookSuggestionIndexLoader(BookRepository repository, BookChangeRepository changeRepository,
+                                     BookSuggestionIndex index, BookIndexSnapshotStore snapshotStore,
+                                     BookShardRouter shards) {
+        this.repository = repository;
+        this.changeRepository = changeRepository;
+        this.index = index;
+        this.snapshotStore = snapshotStore;
+        this.shards = shards;
+        this.applied = new AtomicLongArray(shards.getShards());
+    }
+
+    //roda depois que todos os beans existem (inclusive o BookInvalidationBus, que guarda
+    //a posicao de cada shard ao ser criado) e antes do servidor aceitar requisicoes
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    public void load() {
+        long[] latest = latestSequences();
+        Optional<BookIndexSnapshot> snapshot = snapshotStore.load();
+        if (snapshot.isPresent() && usable(snapshot.get(), latest)) {
+            snapshot.get().getBooks().forEach(index::restore);
+            int count = catchUp(snapshot.get().getLastSequences());
+            log.info("Indice de sugestoes carregado do snapshot com {} livros e {} alteracoes aplicadas",
+                    index.size(), count);
+            return;
+        }
+        if (snapshot.isPresent()) {
+            //snapshot a frente da base ou com outros shards: veio de outra base, nao da para confiar
+            log.warn("Snapshot nas sequencias {} mas a base esta em {}, refazendo o indice",
+                    Arrays.toString(snapshot.get().getLastSequences()), Arrays.toString(latest));
+        }
+        scan(index::put);
+        setApplied(latest);
+        log.info("Indice de sugestoes carregado com {} livros", index.size());
+    }
+
+    //o evento ja traz o livro como ficou depois da alteracao, nao precisa ir ao banco.
+    //o bus entrega cada shard em ordem, entao a posicao anda junto com o indice
+    @Override
+    public void onChange(int shard, BookChange change) {
+        apply(change);
+        applied.accumulateAndGet(shard, change.getSequence(), Math::max);
+    }
+
+    //monta um indice novo ao lado do atual e troca no fim: as sugestoes continuam
+    //respondendo durante a leitura e a popularidade dos livros e mantida
+    @Override
+    public void onResync() {
+        long[] latest = latestSequences();
+        BookSuggestionIndex.Rebuild rebuild = index.rebuild();
+        scan(rebuild::put);
+        rebuild.finish();
+        setApplied(latest);
+        log.info("Indice de sugestoes refeito com {} livros", index.size());
+    }
+
+    @PreDestroy
+    public void saveSnapshot() {
+        if (!snapshotStore.isEnabled()) {
+            return;
+        }
+        try {
+            //o que mudou depois de applied ja esta no indice, mas reaplicar e seguro
+            snapshotStore.save(new BookIndexSnapshot(appliedSequences(), index.entries()));
+        } catch (IOException ex) {
+            log.warn("Nao foi possivel gravar o snapshot do indice", ex);
+        }
+    }
+
+    private void scan(Consumer<Book> target) {
+        shards.forEachShard(shard -> scanShard(target));
+    }
+
+    private void scanShard(Consumer<Book> target) {
+        long lastId = 0;
+        List<Book> books;
+        do {
+            books = repository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BATCH_SIZE));
+            for (Book book : books) {
+                target.accept(book);
+                lastId = book.getId();
+            }
+        } while (books.size() == BATCH_SIZE);
+    }
+
+    //cada livro fica em um unico shard, entao basta manter a ordem dentro de cada shard
+    private int catchUp(long[] since) {
+        long[] positions = since.clone();
+        AtomicInteger count = new AtomicInteger();
+        shards.forEachShard(shard -> count.addAndGet(catchUpShard(shard, positions)));
+        setApplied(positions);
+        return count.get();
+    }
+
+    long[] appliedSequences() {
+        long[] sequences = new long[applied.length()];
+        for (int shard = 0; shard < sequences.length; shard++) {
+            sequences[shard] = applied.get(shard);
+        }
+        return sequences;
+    }
+
+    private void setApplied(long[] sequences) {
+        for (int shard = 0; shard < sequences.length; shard++) {
+            applied.set(shard, sequences[shard]);
+        }
+    }
+
+    private int catchUpShard(int shard, long[] positions) {
+        int count = 0;
+        List<BookChange> changes;
+        do {
+            changes = changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(positions[shard], PageRequest.of(0, BATCH_SIZE));
+            for (BookChange change : changes) {
+                apply(change);
+                positions[shard] = change.getSequence();
+                count++;
+            }
+        } while (changes.size() == BATCH_SIZE);
+        return count;
+    }
+
+    private void apply(BookChange change) {
+        if (change.getType() == BookChangeType.DELETE) {
+            index.remove(change.getBookId());
+            return;
+        }
+        index.put(Book.builder()
+                .id(change.getBookId())
+                .title(change.getTitle())
+                .author(change.getAuthor())
+                .isbn(change.getIsbn())
+                .build());
+    }
+
+    private boolean usable(BookIndexSnapshot snapshot, long[] latest) {
+        if (snapshot.getLastSequences().length != latest.length) {
+            return false;
+        }
+        for (int shard = 0; shard < latest.length; shard++) {
+            if (snapshot.getLastSequences()[shard] > latest[shard]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] latestSequences() {
+        return shards.scatter(shard -> changeRepository.findTopByOrderBySequenceDesc()
+                        .map(BookChange::getSequence).orElse(0L))
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,97 @@
+package com.fabio.libraryapi.sharding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+//decide em qual shard fica cada livro: pelo hash do isbn normalizado na escrita
+//e pelos bits do id na leitura. sem sharding ligado existe apenas o shard 0.
+@Component
+public class BookShardRouter {
+
+    private final int shards;
+    private final ExecutorService executor;
+
+    public BookShardRouter(@Value("${library.sharding.enabled:false}") boolean enabled,
+                           @Value("${library.sharding.urls:}") String[] urls) {
+        this.shards = enabled ? urls.length : 1;
+        if (shards < 1 || shards > ShardedIdGenerator.MAX_SHARDS) {
+            throw new IllegalArgumentException("Quantidade de shards invalida: " + shards);
+        }
+        this.executor = shards > 1 ? Executors.newFixedThreadPool(shards, runnable -> {
+            Thread thread = new Thread(runnable, "book-shard");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public int shardOfIsbn(String isbn) {
+        return Math.floorMod(normalizeIsbn(isbn).hashCode(), shards);
+    }
+
+    public int shardOfId(long id) {
+        int shard = ShardedIdGenerator.shardOf(id);
+        return shard < shards ? shard : 0;
+    }
+
+    //executa a consulta em todos os shards em paralelo e devolve na ordem dos shards
+    public <T> List<T> scatter(IntFunction<T> query) {
+        List<T> results = new ArrayList<>(shards);
+        if (executor == null) {
+            results.add(ShardContext.on(0, () -> query.apply(0)));
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> ShardContext.on(current, () -> query.apply(current)), executor));
+        }
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return results;
+    }
+
+    //percorre os shards um por vez, na thread atual
+    public void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < shards; shard++) {
+            int current = shard;
+            ShardContext.run(current, () -> action.accept(current));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    static String normalizeIsbn(String isbn) {
+        if (isbn == null) {
+            return "";
+        }
+        return isbn.replaceAll("[\\s-]", "").toUpperCase(Locale.ROOT);
+    }
+}
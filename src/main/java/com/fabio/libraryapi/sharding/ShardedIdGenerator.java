@@ -0,0 +1,59 @@
+package com.fabio.libraryapi.sharding;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//ids vindos de uma sequence do banco em blocos (pooled), entao o lote de inserts funciona
+//e duas instancias nunca geram o mesmo id: quem numera e o banco, nao o relogio de cada uma.
+//com sharding ligado cada shard tem a sua sequence e o shard vai nos 8 bits de baixo
+//(id = valor * 256 + shard), entao a busca por id vai direto para o banco certo.
+//os ids ficam bem abaixo de 2^53 e clientes javascript leem sem perder precisao.
+public class ShardedIdGenerator extends SequenceStyleGenerator {
+
+    //ligado pelo ShardingConfig nas propriedades do hibernate
+    public static final String SHARDED = "library.sharding.enabled";
+    static final int SHARD_BITS = 8;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private final ConcurrentMap<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+    private boolean sharded;
+    private int incrementSize;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        super.configure(type, params, serviceRegistry);
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        this.sharded = ConfigurationHelper.getBoolean(SHARDED, settings, false);
+        this.incrementSize = getOptimizer().getIncrementSize();
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        if (!sharded) {
+            return super.generate(session, object);
+        }
+        int shard = ShardContext.current();
+        //o bloco de ids reservado em um shard nao vale nos outros: um optimizer por shard
+        Optimizer optimizer = optimizers.computeIfAbsent(shard, key -> OptimizerFactory.buildOptimizer(
+                StandardOptimizerDescriptor.POOLED.getExternalName(), Long.class, incrementSize, -1));
+        long value = ((Number) optimizer.generate(getDatabaseStructure().buildCallback(session))).longValue();
+        return (value << SHARD_BITS) | shard;
+    }
+
+    public static int shardOf(long id) {
+        return (int) (id & (MAX_SHARDS - 1));
+    }
+}
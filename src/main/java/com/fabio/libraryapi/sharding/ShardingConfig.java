@@ -0,0 +1,55 @@
+package com.fabio.libraryapi.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+//modo com varios bancos: um pool por shard atras de um DataSource de roteamento.
+//o proxy lazy so abre a conexao no primeiro sql, depois que o shard ja foi escolhido.
+@Configuration
+@ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public DataSource dataSource(@Value("${library.sharding.urls}") String[] urls,
+                                 @Value("${spring.datasource.username:sa}") String username,
+                                 @Value("${spring.datasource.password:}") String password) {
+        Map<Object, Object> targets = new HashMap<>();
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema-sharded.sql"));
+        for (int shard = 0; shard < urls.length; shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls[shard].trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            //o hibernate so cria as tabelas em um banco, entao cada shard recebe o schema aqui
+            DatabasePopulatorUtils.execute(schema, dataSource);
+            targets.put(shard, dataSource);
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(targets.get(0));
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    //avisa o ShardedIdGenerator para colocar o shard nos ids
+    @Bean
+    public HibernatePropertiesCustomizer shardedIds() {
+        return properties -> properties.put(ShardedIdGenerator.SHARDED, "true");
+    }
+}
@@ -0,0 +1,39 @@
+-- ids do ShardedIdGenerator: blocos de 50 por ida ao banco (pooled)
+create sequence if not exists book_seq start with 1 increment by 50;
+create table if not exists book (
+    id bigint not null,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    primary key (id)
+);
+create index if not exists idx_book_isbn on book (isbn);
+create table if not exists book_change (
+    sequence bigint not null,
+    book_id bigint not null,
+    type varchar(255) not null,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    primary key (sequence)
+);
+create table if not exists book_change_counter (
+    id integer not null,
+    last_sequence bigint not null,
+    primary key (id)
+);
+insert into book_change_counter (id, last_sequence)
+    select 1, 0 where not exists (select 1 from book_change_counter where id = 1);
+create table if not exists export_job (
+    id varchar(36) not null,
+    format varchar(255) not null,
+    file_name varchar(255) not null,
+    created_at timestamp not null,
+    updated_at timestamp not null,
+    status varchar(255) not null,
+    change_token varchar(255),
+    row_count bigint not null,
+    file_size bigint not null,
+    error varchar(1000),
+    primary key (id)
+);
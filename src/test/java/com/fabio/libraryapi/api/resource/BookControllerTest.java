@@ -1,11 +1,17 @@
 package com.fabio.libraryapi.api.resource;
 
 import com.fabio.libraryapi.api.dto.BookDTO;
+import com.fabio.libraryapi.api.resouce.BookController;
 import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeType;
 import com.fabio.libraryapi.exception.BusinessException;
 import com.fabio.libraryapi.service.BookService;
+import com.fabio.libraryapi.service.feed.ChangeFeed;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -29,16 +35,18 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import java.util.Arrays;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@WebMvcTest
+@WebMvcTest(BookController.class)
 @AutoConfigureMockMvc
 public class BookControllerTest {
 
     static String BOOK_API = "/api/books";
+    static MediaType CBOR = MediaType.valueOf("application/cbor");
 
     @Autowired
     //simula as requisicoes para a api.
@@ -189,7 +197,7 @@ public class BookControllerTest {
     public void deleteBook() throws Exception {
         //cenario
         //cria um book com id
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1l).build()));
+        BDDMockito.given(service.getByIdForUpdate(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1l).build()));
         //execucao
         //faz a requisicao
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -205,7 +213,7 @@ public class BookControllerTest {
     public void deleteInesistenteBook() throws Exception {
         //cenario
         //cria um book com id
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.getByIdForUpdate(Mockito.anyLong())).willReturn(Optional.empty());
         //execucao
         //faz a requisicao
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -225,7 +233,7 @@ public class BookControllerTest {
         String json  = new ObjectMapper().writeValueAsString(createNewBook());
         //cria um book com id
         Book book = Book.builder().id(1l).title("some title").author("some author").isbn("321").build();
-        BDDMockito.given(service.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(service.getByIdForUpdate(id)).willReturn(Optional.of(book));
 
         Book atualizado = Book.builder().id(id).author("Artur").title("As aventuras").isbn("321").build();
         //moca o retorno do obj
@@ -254,7 +262,7 @@ public class BookControllerTest {
     public void updateInexistenteBookTest() throws Exception {
         String json = new ObjectMapper().writeValueAsString(createNewBook());
         //retorna um obj vazio
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.getByIdForUpdate(Mockito.anyLong())).willReturn(Optional.empty());
         //faz a requisicao
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(BOOK_API.concat("/"+1))
@@ -289,10 +297,88 @@ public class BookControllerTest {
                 //verifica o tamanho da lista que rotonou
                 .andExpect(jsonPath("content",Matchers.hasSize(1)))
                 .andExpect(jsonPath("totalElements").value(1))
-                .andExpect(jsonPath("pageable.pageSize").value(100))
-                .andExpect(jsonPath("pageable.pageNumber").value(0));
+                .andExpect(jsonPath("size").value(100))
+                .andExpect(jsonPath("page").value(0))
+                //envelope enxuto, sem os metadados do PageImpl
+                .andExpect(jsonPath("pageable").doesNotExist())
+                .andExpect(jsonPath("sort").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve retornar o livro em cbor quando solicitado")
+    public void getBookDetailsCborTest() throws Exception {
+        //cenario
+        long id = 1l;
+        Book book = Book.builder().id(id).author("Artur").title("As aventuras").isbn("001").build();
+        BDDMockito.given(service.getById(id)).willReturn(Optional.of(book));
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + id))
+                .accept(CBOR);
+        //verificacao
+        byte[] body = mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode node = new ObjectMapper(new CBORFactory()).readTree(body);
+        assertThat(node.get("id").asLong()).isEqualTo(id);
+        assertThat(node.get("title").asText()).isEqualTo(book.getTitle());
+        assertThat(node.get("isbn").asText()).isEqualTo(book.getIsbn());
+    }
+
+    @Test
+    @DisplayName("Deve retornar as alteracoes depois do token informado")
+    public void changesFeedTest() throws Exception {
+        //cenario
+        BookChange saved = BookChange.builder().sequence(5l).bookId(1l).type(BookChangeType.SAVE)
+                .title("As aventuras").author("Artur").isbn("001").build();
+        BookChange deleted = BookChange.builder().sequence(7l).bookId(2l).type(BookChangeType.DELETE)
+                .isbn("002").build();
+        BDDMockito.given(service.changes("4", 2)).willReturn(new ChangeFeed(Arrays.asList(saved, deleted), "7", true));
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/changes?since=4&size=2"))
+                .accept(MediaType.APPLICATION_JSON);
+        //verificacao
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("changes", Matchers.hasSize(2)))
+                .andExpect(jsonPath("changes[0].type").value("SAVE"))
+                .andExpect(jsonPath("changes[1].type").value("DELETE"))
+                .andExpect(jsonPath("changes[1].bookId").value(2))
+                .andExpect(jsonPath("next").value("7"))
+                .andExpect(jsonPath("hasMore").value(true));
+    }
+
+    @Test
+    @DisplayName("Deve manter o token quando nao houver alteracoes")
+    public void emptyChangesFeedTest() throws Exception {
+        BDDMockito.given(service.changes(Mockito.anyString(), Mockito.anyInt())).willReturn(new ChangeFeed(Arrays.asList(), "9", false));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/changes?since=9"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("changes", Matchers.hasSize(0)))
+                .andExpect(jsonPath("next").value("9"))
+                .andExpect(jsonPath("hasMore").value(false));
     }
+    @Test
+    @DisplayName("Deve retornar sugestoes pelo prefixo")
+    public void suggestTest() throws Exception {
+        BDDMockito.given(service.suggest("as", 10)).willReturn(Arrays.asList("As aventuras", "Asimov"));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/suggest?prefix=as"))
+                .accept(MediaType.APPLICATION_JSON);
 
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$[0]").value("As aventuras"));
+    }
 
     //cria um novo BOOK
     private BookDTO createNewBook() {
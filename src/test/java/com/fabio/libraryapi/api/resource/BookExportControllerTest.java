@@ -0,0 +1,145 @@
+package com.fabio.libraryapi.api.resource;
+
+import com.fabio.libraryapi.api.resouce.BookExportController;
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.service.BookExportService;
+import com.fabio.libraryapi.service.export.ExportFormat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(BookExportController.class)
+@AutoConfigureMockMvc
+public class BookExportControllerTest {
+
+    static String EXPORT_API = "/api/books/exports";
+
+    @Autowired
+    MockMvc mvc;
+    @MockBean
+    BookExportService service;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Deve iniciar uma exportacao")
+    public void createExportTest() throws Exception {
+        //cenario
+        ExportJob job = new ExportJob("abc", ExportFormat.CSV);
+        BDDMockito.given(service.start(ExportFormat.CSV)).willReturn(job);
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(EXPORT_API.concat("?format=CSV"))
+                .accept(MediaType.APPLICATION_JSON);
+        //verificacao
+        mvc.perform(request)
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("id").value("abc"))
+                .andExpect(jsonPath("format").value("CSV"))
+                .andExpect(jsonPath("status").value("PENDING"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 para uma exportacao inexistente")
+    public void exportNotFoundTest() throws Exception {
+        BDDMockito.given(service.getById(Mockito.anyString())).willReturn(Optional.empty());
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 409 ao baixar uma exportacao que nao terminou")
+    public void downloadUnfinishedExportTest() throws Exception {
+        ExportJob job = new ExportJob("abc", ExportFormat.NDJSON);
+        BDDMockito.given(service.getById("abc")).willReturn(Optional.of(job));
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc/file")))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("Deve baixar o arquivo inteiro")
+    public void downloadTest() throws Exception {
+        ExportJob job = finishedJob("0123456789");
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc/file")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    @DisplayName("Deve baixar apenas o intervalo pedido para retomar o download")
+    public void downloadRangeTest() throws Exception {
+        finishedJob("0123456789");
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc/file")).header(HttpHeaders.RANGE, "bytes=4-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-9/10"))
+                .andExpect(content().string("456789"));
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc/file")).header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("789"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 416 para um intervalo fora do arquivo")
+    public void downloadInvalidRangeTest() throws Exception {
+        finishedJob("0123456789");
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc/file")).header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 quando o arquivo da exportacao nao estiver no diretorio")
+    public void downloadMissingFileTest() throws Exception {
+        ExportJob job = new ExportJob("abc", ExportFormat.NDJSON);
+        job.running("0");
+        job.done(10);
+        BDDMockito.given(service.getById("abc")).willReturn(Optional.of(job));
+        BDDMockito.given(service.fileOf(job)).willReturn(dir.resolve("outro.ndjson.gz"));
+
+        mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/abc/file")))
+                .andExpect(status().isNotFound());
+    }
+
+    private ExportJob finishedJob(String content) throws Exception {
+        Path file = dir.resolve("books.ndjson.gz");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        ExportJob job = new ExportJob("abc", ExportFormat.NDJSON);
+        job.running("0");
+        job.done(Files.size(file));
+        BDDMockito.given(service.getById("abc")).willReturn(Optional.of(job));
+        BDDMockito.given(service.fileOf(job)).willReturn(file);
+        return job;
+    }
+}
@@ -0,0 +1,129 @@
+package com.fabio.libraryapi.api.resource;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.service.BookService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//sem open-in-view a conexao tem que voltar para o pool antes do json ser escrito
+@SpringBootTest(properties = {
+        "library.invalidation.transport=local",
+        "library.jfr.enabled=false"
+})
+@AutoConfigureMockMvc
+@Import(ConnectionReleaseTest.ActiveConnectionsProbe.class)
+@DirtiesContext
+public class ConnectionReleaseTest {
+
+    static String BOOK_API = "/api/books";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    ActiveConnectionsProbe probe;
+
+    Book book;
+
+    @BeforeEach
+    public void setUp() {
+        book = service.save(Book.builder().isbn("isbn-" + System.nanoTime()).title("As aventuras").author("Artur").build());
+        probe.reset();
+    }
+
+    @Test
+    @DisplayName("Deve devolver a conexao ao pool antes de escrever a pagina de livros")
+    public void findReleasesConnectionTest() throws Exception {
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?title=aventuras&page=0&size=100")
+                        .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content").isNotEmpty());
+        assertThat(probe.getActiveConnections()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Deve devolver a conexao ao pool antes de escrever o livro buscado pelo id")
+    public void getReleasesConnectionTest() throws Exception {
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/" + book.getId())
+                        .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(book.getId()));
+        assertThat(probe.getActiveConnections()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Deve devolver a conexao ao pool antes de escrever o feed de alteracoes")
+    public void changesReleasesConnectionTest() throws Exception {
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "/changes?since=0")
+                        .accept(MediaType.APPLICATION_JSON))
+                //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("changes").isNotEmpty());
+        assertThat(probe.getActiveConnections()).isEqualTo(0);
+    }
+
+    //le as conexoes em uso no pool no momento em que o corpo da resposta vai ser escrito
+    @ControllerAdvice
+    static class ActiveConnectionsProbe implements ResponseBodyAdvice<Object> {
+
+        private final HikariDataSource pool;
+        private final AtomicInteger activeConnections = new AtomicInteger(-1);
+
+        ActiveConnectionsProbe(DataSource dataSource) throws SQLException {
+            this.pool = dataSource.unwrap(HikariDataSource.class);
+        }
+
+        @Override
+        public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+            return true;
+        }
+
+        @Override
+        public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                      Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                      ServerHttpRequest request, ServerHttpResponse response) {
+            activeConnections.set(pool.getHikariPoolMXBean().getActiveConnections());
+            return body;
+        }
+
+        void reset() {
+            activeConnections.set(-1);
+        }
+
+        int getActiveConnections() {
+            return activeConnections.get();
+        }
+    }
+}
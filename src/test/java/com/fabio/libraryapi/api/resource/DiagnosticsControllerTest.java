@@ -0,0 +1,72 @@
+package com.fabio.libraryapi.api.resource;
+
+import com.fabio.libraryapi.api.resouce.DiagnosticsController;
+import com.fabio.libraryapi.diagnostics.FlightRecorderService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = DiagnosticsController.class, properties = {
+        "library.jfr.dump-endpoint.enabled=true",
+        "library.jfr.dump-endpoint.token=segredo"
+})
+@AutoConfigureMockMvc
+public class DiagnosticsControllerTest {
+
+    static String RECORDING_API = "/api/admin/recordings";
+
+    @Autowired
+    MockMvc mvc;
+    @MockBean
+    FlightRecorderService flightRecorder;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Deve salvar os ultimos minutos da gravacao para um administrador")
+    public void dumpWithAdminTokenTest() throws Exception {
+        //cenario
+        Path file = Files.write(dir.resolve("library-api-1.jfr"), new byte[]{1, 2, 3});
+        BDDMockito.given(flightRecorder.isRunning()).willReturn(true);
+        BDDMockito.given(flightRecorder.getMaxAge()).willReturn(Duration.ofMinutes(30));
+        BDDMockito.given(flightRecorder.dump(Duration.ofMinutes(5))).willReturn(file);
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.post(RECORDING_API).header("X-Admin-Token", "segredo"))
+        //verificacao
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("file").value("library-api-1.jfr"))
+                .andExpect(jsonPath("size").value(3))
+                .andExpect(jsonPath("minutes").value(5));
+    }
+
+    @Test
+    @DisplayName("Deve recusar o dump sem o token de administrador")
+    public void dumpWithoutAdminTokenTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post(RECORDING_API))
+                .andExpect(status().isForbidden());
+        mvc.perform(MockMvcRequestBuilders.post(RECORDING_API).header("X-Admin-Token", "outro"))
+                .andExpect(status().isForbidden());
+
+        Mockito.verify(flightRecorder, Mockito.never()).dump(Mockito.any());
+    }
+}
@@ -0,0 +1,71 @@
+package com.fabio.libraryapi.api.resource;
+
+import com.fabio.libraryapi.api.dto.BookDTO;
+import com.fabio.libraryapi.api.dto.PageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//mede bytes por resposta e tempo de serializacao de uma pagina de livros
+//nos formatos suportados. os numeros saem no console do teste, entao so roda com:
+//mvn test -Dtest=WireFormatBenchmarkTest -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class WireFormatBenchmarkTest {
+
+    static int PAGE_SIZE = 100;
+    static int ITERATIONS = 2000;
+
+    @Test
+    @DisplayName("Formatos binarios e envelope enxuto devem gerar respostas menores que o PageImpl em json")
+    public void compareWireFormats() throws Exception {
+        List<BookDTO> books = createBooks();
+        PageImpl<BookDTO> pageImpl = new PageImpl<BookDTO>(books, PageRequest.of(0, PAGE_SIZE), 10_000);
+        PageDTO<BookDTO> page = PageDTO.of(books, pageImpl);
+
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+        int pageImplJson = measure("json (PageImpl)", json, pageImpl);
+        int pageJson = measure("json (PageDTO)", json, page);
+        int pageCbor = measure("cbor (PageDTO)", cbor, page);
+        int pageSmile = measure("smile (PageDTO)", smile, page);
+
+        assertThat(pageJson).isLessThan(pageImplJson);
+        assertThat(pageCbor).isLessThan(pageJson);
+        assertThat(pageSmile).isLessThan(pageJson);
+    }
+
+    private int measure(String name, ObjectMapper mapper, Object value) throws Exception {
+        byte[] bytes = mapper.writeValueAsBytes(value);
+        //aquecimento
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(value);
+        }
+        long micros = (System.nanoTime() - start) / ITERATIONS / 1000;
+        System.out.println(String.format("%-16s %7d bytes/resposta %6d us/serializacao", name, bytes.length, micros));
+        return bytes.length;
+    }
+
+    private List<BookDTO> createBooks() {
+        List<BookDTO> books = new ArrayList<>();
+        for (long i = 0; i < PAGE_SIZE; i++) {
+            books.add(BookDTO.builder().id(i).title("As aventuras " + i).author("Artur").isbn("isbn-" + i).build());
+        }
+        return books;
+    }
+}
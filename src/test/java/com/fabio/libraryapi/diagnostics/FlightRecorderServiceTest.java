@@ -0,0 +1,84 @@
+package com.fabio.libraryapi.diagnostics;
+
+import com.fabio.libraryapi.entity.Book;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlightRecorderServiceTest {
+
+    @TempDir
+    Path dir;
+
+    FlightRecorderService flightRecorder;
+
+    @AfterEach
+    public void tearDown(){
+        flightRecorder.stop();
+    }
+
+    @Test
+    @DisplayName("Deve salvar os eventos dos livros gravados nos ultimos minutos")
+    public void dumpRecentEventsTest() throws Exception {
+        //cenario
+        flightRecorder = new FlightRecorderService(true, 30, 50, 5, dir.toString());
+        flightRecorder.start();
+        Book filter = Book.builder().title("aventuras").build();
+        BookServiceEvent.start("find")
+                .filter(filter, PageRequest.of(0, 20, Sort.by("title").descending()))
+                .finish(3);
+        //execucao
+        Path file = flightRecorder.dump(Duration.ofMinutes(1));
+        //verificacao
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("com.fabio.libraryapi.BookService"))
+                .collect(Collectors.toList());
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getString("operation")).isEqualTo("find");
+        assertThat(events.get(0).getString("filterShape")).isEqualTo("title sort=title desc");
+        assertThat(events.get(0).getInt("pageSize")).isEqualTo(20);
+        assertThat(events.get(0).getInt("rowsReturned")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve manter apenas os dumps mais recentes no diretorio")
+    public void keepLatestDumpsTest() throws Exception {
+        //cenario
+        flightRecorder = new FlightRecorderService(true, 30, 50, 2, dir.toString());
+        flightRecorder.start();
+        //execucao
+        Path first = flightRecorder.dump(Duration.ofMinutes(1));
+        Path second = flightRecorder.dump(Duration.ofMinutes(1));
+        Path third = flightRecorder.dump(Duration.ofMinutes(1));
+        //verificacao
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.collect(Collectors.toList())).containsExactlyInAnyOrder(second, third);
+        }
+        assertThat(Files.exists(first)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Nao deve salvar nada quando a gravacao estiver desligada")
+    public void disabledRecordingTest() throws Exception {
+        flightRecorder = new FlightRecorderService(false, 30, 50, 5, dir.toString());
+        flightRecorder.start();
+
+        assertThat(flightRecorder.isRunning()).isFalse();
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalStateException.class,
+                () -> flightRecorder.dump(Duration.ofMinutes(1)));
+    }
+}
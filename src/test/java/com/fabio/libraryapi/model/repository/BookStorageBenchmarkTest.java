@@ -0,0 +1,119 @@
+package com.fabio.libraryapi.model.repository;
+
+import com.fabio.libraryapi.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//mede insercao e busca no modo embarcado em arquivo (perfil "file").
+//demora e ocupa alguns GB em disco, entao so roda com:
+//mvn test -Dtest=BookStorageBenchmarkTest -Dbenchmark=true [-Dbenchmark.books=1000000,10000000]
+@SpringBootTest
+@ActiveProfiles("file")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class BookStorageBenchmarkTest {
+
+    static int BATCH = 5_000;
+    static int LOOKUPS = 200_000;
+    //guarda 1 id a cada SAMPLE livros para sortear as buscas
+    static int SAMPLE = 50;
+
+    @TempDir
+    static Path dir;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + dir.resolve("library")
+                + ";CACHE_SIZE=65536;QUERY_CACHE_SIZE=64;DB_CLOSE_ON_EXIT=FALSE");
+        registry.add("library.index.snapshot-file", () -> "");
+        registry.add("library.jfr.enabled", () -> "false");
+    }
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transaction;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    @DisplayName("Deve medir a taxa de insercao e de busca com 1M e 10M de livros")
+    public void insertAndLookupRates() {
+        String[] sizes = System.getProperty("benchmark.books", "1000000,10000000").split(",");
+        List<Long> ids = new ArrayList<>();
+        long total = 0;
+        for (String size : sizes) {
+            //cada tamanho continua a partir do anterior, so insere a diferenca
+            long target = Long.parseLong(size.trim());
+            long insertStart = System.nanoTime();
+            long inserted = target - total;
+            for (long next = total; next < target; next += BATCH) {
+                insertBatch(next, (int) Math.min(BATCH, target - next), ids);
+            }
+            double insertRate = inserted / seconds(insertStart);
+            total = target;
+            assertThat(jdbc.queryForObject("select count(*) from book", Long.class)).isEqualTo(total);
+
+            Random random = new Random(total);
+            long idStart = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                assertThat(repository.findById(ids.get(random.nextInt(ids.size())))).isPresent();
+            }
+            double idRate = LOOKUPS / seconds(idStart);
+
+            long isbnStart = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                assertThat(repository.existsByIsbn(isbn(random.nextInt((int) total)))).isTrue();
+            }
+            double isbnRate = LOOKUPS / seconds(isbnStart);
+
+            System.out.println(String.format("%,12d livros  insercao %,10.0f/s  findById %,10.0f/s  existsByIsbn %,10.0f/s",
+                    total, insertRate, idRate, isbnRate));
+        }
+    }
+
+    private void insertBatch(long from, int count, List<Long> ids) {
+        transaction.executeWithoutResult(status -> {
+            List<Book> books = new ArrayList<>(count);
+            for (long i = from; i < from + count; i++) {
+                books.add(Book.builder().isbn(isbn(i)).title("Titulo " + i).author("Autor " + (i % 1000)).build());
+            }
+            repository.saveAll(books);
+            //descarrega o lote e limpa o contexto para a memoria nao crescer com a tabela
+            entityManager.flush();
+            entityManager.clear();
+            for (int i = 0; i < books.size(); i += SAMPLE) {
+                ids.add(books.get(i).getId());
+            }
+        });
+    }
+
+    private static String isbn(long i) {
+        return String.format("978-%010d", i);
+    }
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -0,0 +1,201 @@
+package com.fabio.libraryapi.service;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.model.repository.BookRepository;
+import com.fabio.libraryapi.model.repository.ExportJobRepository;
+import com.fabio.libraryapi.service.export.ExportFormat;
+import com.fabio.libraryapi.service.export.ExportStatus;
+import com.fabio.libraryapi.service.impl.BookExportServiceImpl;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookExportServiceTest {
+
+    BookExportServiceImpl service;
+
+    @MockBean
+    BookRepository repository;
+
+    @MockBean
+    BookChangeRepository changeRepository;
+
+    @MockBean
+    ExportJobRepository jobRepository;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void setUp(){
+        this.service = new BookExportServiceImpl(repository, changeRepository, jobRepository, new ObjectMapper(),
+                new BookShardRouter(false, new String[0]), dir.toString(), 10, 10, 300000);
+        Mockito.when(jobRepository.save(Mockito.any(ExportJob.class))).then(AdditionalAnswers.returnsFirstArg());
+        Book first = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        Book second = Book.builder().id(2l).title("Contos, \"volume 1\"").author("Fulano").isbn("002").build();
+        Mockito.when(repository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0l), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(first, second));
+        Mockito.when(changeRepository.findTopByOrderBySequenceDesc()).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    public void tearDown(){
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catalogo em ndjson compactado")
+    public void exportNdjsonTest() throws Exception {
+        ExportJob job = waitFor(service.start(ExportFormat.NDJSON));
+
+        assertThat(job.getStatus()).isEqualTo(ExportStatus.DONE);
+        assertThat(job.getRows()).isEqualTo(2);
+        assertThat(job.getChangeToken()).isEqualTo("0");
+        assertThat(job.getSize()).isEqualTo(Files.size(service.fileOf(job)));
+        List<String> lines = readGzip(service.fileOf(job));
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).isEqualTo("{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\"}");
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catalogo em csv escapando os campos")
+    public void exportCsvTest() throws Exception {
+        ExportJob job = waitFor(service.start(ExportFormat.CSV));
+
+        assertThat(job.getStatus()).isEqualTo(ExportStatus.DONE);
+        assertThat(readGzip(service.fileOf(job))).containsExactly(
+                "id,title,author,isbn",
+                "1,As aventuras,Artur,001",
+                "2,\"Contos, \"\"volume 1\"\"\",Fulano,002");
+    }
+
+    @Test
+    @DisplayName("Deve marcar a exportacao como falha quando a leitura der erro")
+    public void exportFailureTest() throws Exception {
+        Mockito.when(repository.findByIdGreaterThanOrderByIdAsc(Mockito.anyLong(), Mockito.any(Pageable.class)))
+                .thenThrow(new IllegalStateException("banco fora"));
+
+        ExportJob job = waitFor(service.start(ExportFormat.NDJSON));
+
+        assertThat(job.getStatus()).isEqualTo(ExportStatus.FAILED);
+        assertThat(job.getError()).isEqualTo("banco fora");
+        assertThat(Files.list(dir).collect(Collectors.toList())).isEqualTo(Collections.emptyList());
+    }
+
+    @Test
+    @DisplayName("Deve devolver a exportacao em andamento em vez de iniciar outra")
+    public void reuseRunningExportTest(){
+        //cenario
+        ExportJob running = new ExportJob("abc", ExportFormat.NDJSON);
+        running.running("0");
+        Mockito.when(jobRepository.findFirstByFormatAndStatusInOrderByCreatedAtDesc(Mockito.eq(ExportFormat.NDJSON), Mockito.anyCollection()))
+                .thenReturn(Optional.of(running));
+        //execucao
+        ExportJob job = service.start(ExportFormat.NDJSON);
+        //verificacao
+        assertThat(job).isSameAs(running);
+        Mockito.verify(jobRepository, Mockito.never()).save(Mockito.any(ExportJob.class));
+        Mockito.verify(repository, Mockito.never()).findByIdGreaterThanOrderByIdAsc(Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve devolver uma exportacao pronta ha pouco tempo")
+    public void reuseRecentExportTest(){
+        ExportJob done = new ExportJob("abc", ExportFormat.CSV);
+        done.running("0");
+        done.done(10);
+        Mockito.when(jobRepository.findFirstByFormatAndStatusAndCreatedAtAfterOrderByCreatedAtDesc(
+                Mockito.eq(ExportFormat.CSV), Mockito.eq(ExportStatus.DONE), Mockito.any(Instant.class)))
+                .thenReturn(Optional.of(done));
+
+        assertThat(service.start(ExportFormat.CSV)).isSameAs(done);
+        Mockito.verify(jobRepository, Mockito.never()).save(Mockito.any(ExportJob.class));
+    }
+
+    @Test
+    @DisplayName("Deve marcar como falha a exportacao de uma instancia que parou de responder")
+    public void staleExportTest() throws Exception {
+        //cenario
+        ExportJob stale = new ExportJob("abc", ExportFormat.NDJSON);
+        stale.running("0");
+        Mockito.when(jobRepository.findByStatusInAndUpdatedAtBefore(Mockito.anyCollection(), Mockito.any(Instant.class)))
+                .thenReturn(Collections.singletonList(stale));
+        //execucao
+        ExportJob job = waitFor(service.start(ExportFormat.NDJSON));
+        //verificacao
+        assertThat(stale.getStatus()).isEqualTo(ExportStatus.FAILED);
+        Mockito.verify(jobRepository).save(stale);
+        assertThat(job).isNotSameAs(stale);
+        assertThat(job.getStatus()).isEqualTo(ExportStatus.DONE);
+    }
+
+    @Test
+    @DisplayName("Deve apagar na subida os arquivos antigos que nao pertencem a uma exportacao pronta")
+    public void cleanUpOrphanFilesTest() throws Exception {
+        //cenario
+        ExportJob done = new ExportJob("abc", ExportFormat.NDJSON);
+        done.running("0");
+        done.done(1);
+        Mockito.when(jobRepository.findByStatusInOrderByCreatedAtDesc(Mockito.anyCollection()))
+                .thenReturn(Collections.singletonList(done));
+        FileTime old = FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS));
+        Path kept = Files.write(service.fileOf(done), new byte[1]);
+        Path orphan = Files.setLastModifiedTime(Files.write(dir.resolve("books-xyz.csv.gz"), new byte[1]), old);
+        Path partial = Files.setLastModifiedTime(Files.write(dir.resolve("books-xyz.csv.gz123.tmp"), new byte[1]), old);
+        Path writing = Files.write(dir.resolve("books-new.csv.gz456.tmp"), new byte[1]);
+        Files.setLastModifiedTime(kept, old);
+        //execucao
+        service.cleanUp();
+        //verificacao
+        assertThat(Files.exists(kept)).isTrue();
+        assertThat(Files.exists(writing)).isTrue();
+        assertThat(Files.exists(orphan)).isFalse();
+        assertThat(Files.exists(partial)).isFalse();
+    }
+
+    private ExportJob waitFor(ExportJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && (job.getStatus() == ExportStatus.PENDING || job.getStatus() == ExportStatus.RUNNING); i++) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+
+    private List<String> readGzip(Path file) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package com.fabio.libraryapi.service;
 
 import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeCounter;
+import com.fabio.libraryapi.entity.BookChangeType;
 import com.fabio.libraryapi.exception.BusinessException;
+import com.fabio.libraryapi.model.repository.BookChangeCounterRepository;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
 import com.fabio.libraryapi.model.repository.BookRepository;
+import com.fabio.libraryapi.service.cache.MissingBookCache;
+import com.fabio.libraryapi.service.feed.ChangeCounterInitializer;
 import com.fabio.libraryapi.service.impl.BookServiceImpl;
+import com.fabio.libraryapi.service.invalidation.LocalInvalidationBus;
+import com.fabio.libraryapi.service.snapshot.BookIndexSnapshotStore;
+import com.fabio.libraryapi.service.suggest.BookSuggestionIndex;
+import com.fabio.libraryapi.service.suggest.BookSuggestionIndexLoader;
+import com.fabio.libraryapi.sharding.BookShardRouter;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Example;
@@ -34,10 +47,26 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    BookChangeRepository changeRepository;
+
+    @MockBean
+    BookChangeCounterRepository counterRepository;
+
+    MissingBookCache missingBooks;
+
     //executa o metodo antes de cada teste
     @BeforeEach
     public void setUp(){
-        this.service=new BookServiceImpl(repository);
+        missingBooks = new MissingBookCache(100, 60000);
+        BookSuggestionIndex suggestions = new BookSuggestionIndex(10);
+        BookShardRouter shards = new BookShardRouter(false, new String[0]);
+        BookSuggestionIndexLoader loader = new BookSuggestionIndexLoader(repository, changeRepository,
+                suggestions, new BookIndexSnapshotStore(""), shards);
+        Mockito.when(counterRepository.lockById(BookChangeCounter.ID))
+                .thenReturn(Optional.of(new BookChangeCounter(BookChangeCounter.ID, 0l)));
+        this.service=new BookServiceImpl(repository, changeRepository, counterRepository, missingBooks, suggestions,
+                shards, new LocalInvalidationBus(Arrays.asList(missingBooks, loader), changeRepository, shards, 5000));
     }
 
     @Test
@@ -196,6 +225,200 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve registrar uma alteracao ao salvar um livro")
+    public void saveBookRecordsChangeTest(){
+        //cenario
+        Book book = createNewBook();
+        Book saved = createNewBook();
+        saved.setId(1l);
+        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        Mockito.when(repository.save(book)).thenReturn(saved);
+        //execucao
+        service.save(book);
+        //verificacao
+        ArgumentCaptor<BookChange> captor = ArgumentCaptor.forClass(BookChange.class);
+        Mockito.verify(changeRepository,Mockito.times(1)).save(captor.capture());
+        assertThat(captor.getValue().getType()).isEqualTo(BookChangeType.SAVE);
+        assertThat(captor.getValue().getBookId()).isEqualTo(1l);
+        assertThat(captor.getValue().getSequence()).isEqualTo(1l);
+    }
+
+    @Test
+    @DisplayName("Deve numerar as alteracoes em sequencia continua pelo contador travado")
+    public void changeSequenceIsContiguousTest(){
+        //cenario
+        Book book = createNewBook();
+        book.setId(1l);
+        Mockito.when(repository.save(book)).thenReturn(book);
+        //execucao
+        service.update(book);
+        service.update(book);
+        service.delete(book);
+        //verificacao
+        ArgumentCaptor<BookChange> captor = ArgumentCaptor.forClass(BookChange.class);
+        Mockito.verify(changeRepository,Mockito.times(3)).save(captor.capture());
+        assertThat(captor.getAllValues()).extracting(BookChange::getSequence).containsExactly(1l, 2l, 3l);
+        Mockito.verify(counterRepository,Mockito.times(3)).lockById(BookChangeCounter.ID);
+    }
+
+    @Test
+    @DisplayName("Deve criar o contador do feed na subida apenas quando ele nao existir")
+    public void seedChangeCounterTest(){
+        //cenario
+        ChangeCounterInitializer initializer = new ChangeCounterInitializer(counterRepository,
+                new BookShardRouter(false, new String[0]));
+        Mockito.when(counterRepository.existsById(BookChangeCounter.ID)).thenReturn(false, true);
+        //execucao
+        initializer.seed();
+        initializer.seed();
+        //verificacao
+        ArgumentCaptor<BookChangeCounter> captor = ArgumentCaptor.forClass(BookChangeCounter.class);
+        Mockito.verify(counterRepository,Mockito.times(1)).saveAndFlush(captor.capture());
+        assertThat(captor.getValue().getLastSequence()).isEqualTo(0l);
+    }
+
+    @Test
+    @DisplayName("Deve falhar a escrita quando o contador do feed nao existir")
+    public void missingChangeCounterTest(){
+        //cenario
+        Book book = createNewBook();
+        book.setId(1l);
+        Mockito.when(repository.save(book)).thenReturn(book);
+        Mockito.when(counterRepository.lockById(BookChangeCounter.ID)).thenReturn(Optional.empty());
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.update(book));
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        Mockito.verify(counterRepository,Mockito.never()).save(Mockito.any(BookChangeCounter.class));
+    }
+
+    @Test
+    @DisplayName("Deve registrar um tombstone ao deletar um livro")
+    public void deleteBookRecordsTombstoneTest(){
+        //cenario
+        Book book = createNewBook();
+        book.setId(1l);
+        //execucao
+        service.delete(book);
+        //verificacao
+        ArgumentCaptor<BookChange> captor = ArgumentCaptor.forClass(BookChange.class);
+        Mockito.verify(changeRepository,Mockito.times(1)).save(captor.capture());
+        assertThat(captor.getValue().getType()).isEqualTo(BookChangeType.DELETE);
+        assertThat(captor.getValue().getBookId()).isEqualTo(1l);
+        assertThat(captor.getValue().getIsbn()).isEqualTo(book.getIsbn());
+    }
+
+    @Test
+    @DisplayName("Nao deve registrar alteracao quando o isbn ja existe")
+    public void shouldNotRecordChangeWithDuplicatedISBN(){
+        Book book = createNewBook();
+        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(true);
+
+        Assertions.catchThrowable(() -> service.save(book));
+
+        Mockito.verify(changeRepository,Mockito.never()).save(Mockito.any(BookChange.class));
+    }
+
+    @Test
+    @DisplayName("Nao deve consultar o banco de novo por um id que ja sabemos que nao existe")
+    public void missingBookIsCachedTest(){
+        //cenario
+        long id = 1l;
+        Mockito.when(repository.findById(id)).thenReturn(Optional.empty());
+        //execucao
+        service.getById(id);
+        Optional<Book> book = service.getById(id);
+        //verificacao
+        assertThat(book.isPresent()).isFalse();
+        Mockito.verify(repository,Mockito.times(1)).findById(id);
+    }
+
+    @Test
+    @DisplayName("Deve esquecer o id inexistente quando um livro for salvo com ele")
+    public void saveInvalidatesMissingBookTest(){
+        //cenario
+        long id = 1l;
+        Book book = createNewBook();
+        Book saved = createNewBook();
+        saved.setId(id);
+        Mockito.when(repository.findById(id)).thenReturn(Optional.empty());
+        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        Mockito.when(repository.save(book)).thenReturn(saved);
+        service.getById(id);
+        //execucao
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(saved));
+        service.save(book);
+        Optional<Book> found = service.getById(id);
+        //verificacao
+        assertThat(found.isPresent()).isTrue();
+        //o indice de sugestoes aplica o evento sem consultar o banco
+        Mockito.verify(repository,Mockito.times(2)).findById(id);
+    }
+
+    @Test
+    @DisplayName("Nao deve marcar como inexistente um id salvo durante a consulta")
+    public void concurrentSaveDoesNotPoisonMissingBookTest(){
+        //cenario
+        long id = 1l;
+        Book saved = createNewBook();
+        saved.setId(id);
+        //o save termina enquanto a consulta ainda le o snapshot antigo
+        Mockito.when(repository.findById(id)).thenAnswer(invocation -> {
+            missingBooks.invalidate(id);
+            return Optional.empty();
+        }).thenReturn(Optional.of(saved));
+        //execucao
+        Optional<Book> first = service.getById(id);
+        Optional<Book> second = service.getById(id);
+        //verificacao
+        assertThat(first.isPresent()).isFalse();
+        assertThat(second.isPresent()).isTrue();
+        Mockito.verify(repository,Mockito.times(2)).findById(id);
+    }
+
+    @Test
+    @DisplayName("Deve voltar a consultar o banco quando o id inexistente expirar")
+    public void missingBookExpiresTest(){
+        //cenario
+        MissingBookCache cache = new MissingBookCache(100, 0);
+        //execucao
+        cache.markMissing(1l, cache.stamp(1l));
+        //verificacao
+        assertThat(cache.isMissing(1l)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Nao deve guardar mais ids inexistentes que a capacidade")
+    public void missingBookCapacityTest(){
+        //cenario
+        MissingBookCache cache = new MissingBookCache(2, 60000);
+        //execucao
+        for (long id = 1; id <= 5; id++) {
+            cache.markMissing(id, cache.stamp(id));
+        }
+        //verificacao
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+        assertThat(cache.isMissing(5l)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve sugerir o titulo de um livro salvo")
+    public void suggestSavedBookTest(){
+        //cenario
+        Book book = createNewBook();
+        Book saved = createNewBook();
+        saved.setId(1l);
+        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        Mockito.when(repository.save(book)).thenReturn(saved);
+        //execucao
+        service.save(book);
+        List<String> suggestions = service.suggest("as av", 10);
+        //verificacao
+        assertThat(suggestions).containsExactly("As aventuras");
+        Mockito.verify(repository,Mockito.never()).findById(Mockito.anyLong());
+    }
+
     private Book createNewBook() {
         return Book.builder().isbn("123").title("As aventuras").author("Fulano").build();
     }
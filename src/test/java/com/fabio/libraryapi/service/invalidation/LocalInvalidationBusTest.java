@@ -0,0 +1,96 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeType;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LocalInvalidationBusTest {
+
+    @MockBean
+    BookChangeRepository changeRepository;
+
+    @MockBean
+    BookInvalidationListener listener;
+
+    @Test
+    @DisplayName("Nao deve ler a outbox enquanto a alteracao que falta esta dentro do limite de espera")
+    public void recoverWaitsForMissingChangeTest(){
+        //cenario
+        LocalInvalidationBus bus = bus(30000);
+        bus.publish(0, change(2l, 2l));
+        //execucao
+        bus.recover();
+        //verificacao
+        Mockito.verify(changeRepository, Mockito.never())
+                .findBySequenceGreaterThanOrderBySequenceAsc(Mockito.anyLong(), Mockito.any(Pageable.class));
+        Mockito.verify(listener, Mockito.never()).onChange(Mockito.anyInt(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve ler da outbox fora da requisicao a alteracao que passou do limite de espera")
+    public void recoverReadsOverdueChangeTest() throws Exception {
+        //cenario
+        LocalInvalidationBus bus = bus(0);
+        BookChange first = change(1l, 1l);
+        BookChange second = change(2l, 2l);
+        outbox(0l, first, second);
+        outbox(2l);
+        bus.publish(0, second);
+        Thread.sleep(5);
+        //execucao
+        bus.recover();
+        //verificacao
+        InOrder inOrder = Mockito.inOrder(listener);
+        inOrder.verify(listener).onChange(0, first);
+        inOrder.verify(listener).onChange(0, second);
+        Mockito.verify(listener, Mockito.never()).onResync();
+    }
+
+    @Test
+    @DisplayName("Nao deve propagar a falha da leitura da outbox")
+    public void recoverLogsFailureTest() throws Exception {
+        //cenario
+        LocalInvalidationBus bus = bus(0);
+        Mockito.when(changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(Mockito.anyLong(), Mockito.any(Pageable.class)))
+                .thenThrow(new IllegalStateException("banco fora"));
+        bus.publish(0, change(2l, 2l));
+        Thread.sleep(5);
+        //execucao
+        bus.recover();
+        //verificacao
+        Mockito.verify(listener, Mockito.never()).onChange(Mockito.anyInt(), Mockito.any());
+    }
+
+    private LocalInvalidationBus bus(long maxWaitMillis) {
+        return new LocalInvalidationBus(Collections.singletonList(listener), changeRepository,
+                new BookShardRouter(false, new String[0]), maxWaitMillis);
+    }
+
+    private void outbox(long after, BookChange... changes) {
+        Mockito.when(changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(Mockito.eq(after), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(changes));
+    }
+
+    private BookChange change(long sequence, long bookId) {
+        return BookChange.builder()
+                .sequence(sequence)
+                .bookId(bookId)
+                .type(BookChangeType.UPDATE)
+                .build();
+    }
+}
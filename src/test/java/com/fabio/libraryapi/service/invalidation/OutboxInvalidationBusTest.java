@@ -0,0 +1,156 @@
+package com.fabio.libraryapi.service.invalidation;
+
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeType;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OutboxInvalidationBusTest {
+
+    OutboxInvalidationBus bus;
+
+    @MockBean
+    BookChangeRepository changeRepository;
+
+    @MockBean
+    BookInvalidationListener listener;
+
+    @BeforeEach
+    public void setUp(){
+        bus = new OutboxInvalidationBus(Collections.singletonList(listener), changeRepository,
+                new BookShardRouter(false, new String[0]), 30000);
+    }
+
+    @Test
+    @DisplayName("Deve entregar as alteracoes feitas em outras instancias apenas uma vez")
+    public void pollDispatchesNewChangesTest(){
+        //cenario
+        BookChange first = change(1l, 1l);
+        BookChange second = change(2l, 2l);
+        outbox(0l, first, second);
+        outbox(2l);
+        //execucao
+        bus.poll();
+        bus.poll();
+        //verificacao
+        Mockito.verify(listener, Mockito.times(1)).onChange(0, first);
+        Mockito.verify(listener, Mockito.times(1)).onChange(0, second);
+        Mockito.verify(listener, Mockito.never()).onResync();
+    }
+
+    @Test
+    @DisplayName("Nao deve reaplicar uma alteracao ja publicada por esta instancia")
+    public void localChangeIsNotDispatchedTwiceTest(){
+        BookChange change = change(1l, 1l);
+        bus.publish(0, change);
+        outbox(0l, change);
+        outbox(1l);
+
+        bus.poll();
+
+        Mockito.verify(listener, Mockito.times(1)).onChange(0, change);
+    }
+
+    @Test
+    @DisplayName("Deve segurar uma alteracao local ate a anterior chegar")
+    public void outOfOrderChangesAreDeliveredInOrderTest(){
+        //cenario
+        BookChange first = change(1l, 1l);
+        BookChange second = change(2l, 1l);
+        //execucao
+        bus.publish(0, second);
+        Mockito.verify(listener, Mockito.never()).onChange(Mockito.anyInt(), Mockito.any());
+        bus.publish(0, first);
+        //verificacao
+        InOrder inOrder = Mockito.inOrder(listener);
+        inOrder.verify(listener).onChange(0, first);
+        inOrder.verify(listener).onChange(0, second);
+    }
+
+    @Test
+    @DisplayName("Deve ler da outbox na thread agendada a alteracao local que nao chegou")
+    public void missingLocalChangeIsReadFromOutboxTest(){
+        //cenario
+        BookChange first = change(1l, 1l);
+        BookChange second = change(2l, 2l);
+        BookChange third = change(3l, 3l);
+        outbox(0l, first, second, third);
+        outbox(3l);
+        //execucao
+        bus.publish(0, second);
+        bus.publish(0, third);
+        //o publish roda no afterCommit da requisicao e nao vai ao banco
+        Mockito.verify(changeRepository, Mockito.never())
+                .findBySequenceGreaterThanOrderBySequenceAsc(Mockito.anyLong(), Mockito.any(Pageable.class));
+        Mockito.verify(listener, Mockito.never()).onChange(Mockito.anyInt(), Mockito.any());
+        bus.poll();
+        //verificacao
+        InOrder inOrder = Mockito.inOrder(listener);
+        inOrder.verify(listener).onChange(0, first);
+        inOrder.verify(listener).onChange(0, second);
+        inOrder.verify(listener).onChange(0, third);
+        Mockito.verify(listener, Mockito.never()).onResync();
+    }
+
+    @Test
+    @DisplayName("Deve ressincronizar quando faltar uma sequencia na outbox")
+    public void holeInOutboxTriggersResyncTest(){
+        //cenario
+        BookChange third = change(3l, 1l);
+        outbox(0l, third);
+        outbox(3l);
+        Mockito.when(changeRepository.findTopByOrderBySequenceDesc()).thenReturn(Optional.of(third));
+        //execucao
+        bus.poll();
+        //verificacao
+        Mockito.verify(listener, Mockito.times(1)).onResync();
+        //o que veio antes do resync ja esta nos caches refeitos
+        Mockito.verify(listener, Mockito.never()).onChange(0, third);
+    }
+
+    @Test
+    @DisplayName("Deve continuar de onde parou quando a outbox voltar a responder")
+    public void pollResumesAfterFailureTest(){
+        BookChange first = change(1l, 1l);
+        Mockito.when(changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(Mockito.eq(0l), Mockito.any(Pageable.class)))
+                .thenThrow(new IllegalStateException("banco fora"))
+                .thenReturn(Collections.singletonList(first));
+        outbox(1l);
+
+        bus.poll();
+        Mockito.verify(listener, Mockito.never()).onChange(Mockito.anyInt(), Mockito.any());
+        bus.poll();
+
+        Mockito.verify(listener, Mockito.times(1)).onChange(0, first);
+        Mockito.verify(listener, Mockito.never()).onResync();
+    }
+
+    private void outbox(long after, BookChange... changes) {
+        Mockito.when(changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(Mockito.eq(after), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(changes));
+    }
+
+    private BookChange change(long sequence, long bookId) {
+        return BookChange.builder()
+                .sequence(sequence)
+                .bookId(bookId)
+                .type(BookChangeType.UPDATE)
+                .build();
+    }
+}
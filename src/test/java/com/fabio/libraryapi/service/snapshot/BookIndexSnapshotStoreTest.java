@@ -0,0 +1,81 @@
+package com.fabio.libraryapi.service.snapshot;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.service.suggest.BookSuggestionIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookIndexSnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Deve gravar e ler o snapshot do indice")
+    public void saveAndLoadTest() throws Exception {
+        //cenario
+        BookIndexSnapshotStore store = new BookIndexSnapshotStore(dir.resolve("index.snapshot").toString());
+        BookIndexSnapshot snapshot = new BookIndexSnapshot(new long[]{42l, 7l}, Arrays.asList(
+                new IndexedBook(1l, "As aventuras", "Artur", 3l),
+                new IndexedBook(2l, "Ástrologia", null, 0l)));
+        //execucao
+        store.save(snapshot);
+        Optional<BookIndexSnapshot> loaded = store.load();
+        //verificacao
+        assertThat(loaded.isPresent()).isTrue();
+        assertThat(loaded.get().getLastSequences()).containsExactly(42l, 7l);
+        assertThat(loaded.get().getBooks()).hasSize(2);
+        assertThat(loaded.get().getBooks().get(0).getTitle()).isEqualTo("As aventuras");
+        assertThat(loaded.get().getBooks().get(0).getPopularity()).isEqualTo(3l);
+        assertThat(loaded.get().getBooks().get(1).getTitle()).isEqualTo("Ástrologia");
+        assertThat(loaded.get().getBooks().get(1).getAuthor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve ignorar um snapshot corrompido")
+    public void corruptedSnapshotTest() throws Exception {
+        Path file = dir.resolve("index.snapshot");
+        BookIndexSnapshotStore store = new BookIndexSnapshotStore(file.toString());
+        store.save(new BookIndexSnapshot(new long[]{1l}, Arrays.asList(new IndexedBook(1l, "As aventuras", "Artur", 0l))));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[30] ^= 0x7F;
+        Files.write(file, bytes);
+
+        assertThat(store.load().isPresent()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Nao deve ler nada quando o snapshot estiver desligado")
+    public void disabledStoreTest() {
+        BookIndexSnapshotStore store = new BookIndexSnapshotStore("");
+
+        assertThat(store.isEnabled()).isFalse();
+        assertThat(store.load().isPresent()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve restaurar o indice com a popularidade do snapshot")
+    public void restoreIndexTest() {
+        BookSuggestionIndex index = new BookSuggestionIndex(10);
+        index.put(Book.builder().id(1l).title("As aventuras").author("Artur").build());
+        index.hit(1l);
+        index.hit(1l);
+
+        BookSuggestionIndex restored = new BookSuggestionIndex(10);
+        index.entries().forEach(restored::restore);
+        restored.put(Book.builder().id(2l).title("Assassinato").author("Agatha").build());
+        restored.hit(2l);
+        restored.foldHits();
+
+        assertThat(restored.entries()).hasSize(2);
+        assertThat(restored.suggest("as", 10)).containsExactly("As aventuras", "Assassinato");
+    }
+}
@@ -0,0 +1,139 @@
+package com.fabio.libraryapi.service.suggest;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.BookChange;
+import com.fabio.libraryapi.entity.BookChangeType;
+import com.fabio.libraryapi.model.repository.BookChangeRepository;
+import com.fabio.libraryapi.model.repository.BookRepository;
+import com.fabio.libraryapi.service.snapshot.BookIndexSnapshot;
+import com.fabio.libraryapi.service.snapshot.BookIndexSnapshotStore;
+import com.fabio.libraryapi.service.snapshot.IndexedBook;
+import com.fabio.libraryapi.sharding.BookShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookSuggestionIndexLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    @MockBean
+    BookRepository repository;
+
+    @MockBean
+    BookChangeRepository changeRepository;
+
+    BookSuggestionIndex index;
+    BookIndexSnapshotStore store;
+    BookSuggestionIndexLoader loader;
+
+    @BeforeEach
+    public void setUp(){
+        index = new BookSuggestionIndex(10);
+        store = new BookIndexSnapshotStore(dir.resolve("index.snapshot").toString());
+        loader = new BookSuggestionIndexLoader(repository, changeRepository, index, store,
+                new BookShardRouter(false, new String[0]));
+    }
+
+    @Test
+    @DisplayName("Deve carregar o snapshot e aplicar apenas as alteracoes posteriores a ele")
+    public void loadFromSnapshotTest() throws Exception {
+        //cenario
+        store.save(new BookIndexSnapshot(new long[]{5l},
+                Collections.singletonList(new IndexedBook(1l, "As aventuras", "Artur", 3l))));
+        BookChange change = change(6l, 2l, "Assassinato");
+        Mockito.when(changeRepository.findTopByOrderBySequenceDesc()).thenReturn(Optional.of(change));
+        outbox(5l, change);
+        //execucao
+        loader.load();
+        //verificacao
+        assertThat(index.suggest("as", 10)).containsExactly("As aventuras", "Assassinato");
+        assertThat(loader.appliedSequences()).containsExactly(6l);
+        Mockito.verify(repository, Mockito.never()).findByIdGreaterThanOrderByIdAsc(Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve ler a tabela de livros quando nao existir snapshot")
+    public void loadWithoutSnapshotTest(){
+        //cenario
+        Mockito.when(changeRepository.findTopByOrderBySequenceDesc()).thenReturn(Optional.of(change(4l, 1l, "As aventuras")));
+        Mockito.when(repository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0l), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.singletonList(book(1l, "As aventuras")));
+        //execucao
+        loader.load();
+        //verificacao
+        assertThat(index.suggest("as", 10)).containsExactly("As aventuras");
+        assertThat(loader.appliedSequences()).containsExactly(4l);
+        Mockito.verify(changeRepository, Mockito.never())
+                .findBySequenceGreaterThanOrderBySequenceAsc(Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve descartar um snapshot a frente da base e ler a tabela de livros")
+    public void snapshotAheadOfDatabaseTest() throws Exception {
+        //cenario
+        store.save(new BookIndexSnapshot(new long[]{9l},
+                Collections.singletonList(new IndexedBook(7l, "Astronomia", "Carl", 0l))));
+        Mockito.when(changeRepository.findTopByOrderBySequenceDesc()).thenReturn(Optional.of(change(3l, 1l, "As aventuras")));
+        Mockito.when(repository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0l), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.singletonList(book(1l, "As aventuras")));
+        //execucao
+        loader.load();
+        //verificacao
+        assertThat(index.suggest("as", 10)).containsExactly("As aventuras");
+        assertThat(loader.appliedSequences()).containsExactly(3l);
+    }
+
+    @Test
+    @DisplayName("Deve gravar no snapshot a posicao das alteracoes aplicadas depois da carga")
+    public void snapshotRecordsAppliedChangesTest(){
+        //cenario
+        loader.load();
+        //execucao
+        loader.onChange(0, change(1l, 1l, "As aventuras"));
+        loader.onChange(0, change(2l, 2l, "Assassinato"));
+        loader.saveSnapshot();
+        //verificacao
+        Optional<BookIndexSnapshot> saved = store.load();
+        assertThat(saved.isPresent()).isTrue();
+        assertThat(saved.get().getLastSequences()).containsExactly(2l);
+        assertThat(saved.get().getBooks()).hasSize(2);
+    }
+
+    private void outbox(long after, BookChange... changes) {
+        Mockito.when(changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(Mockito.eq(after), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(changes));
+    }
+
+    private Book book(long id, String title) {
+        return Book.builder().id(id).title(title).author("Artur").isbn("isbn-" + id).build();
+    }
+
+    private BookChange change(long sequence, long bookId, String title) {
+        return BookChange.builder()
+                .sequence(sequence)
+                .bookId(bookId)
+                .type(BookChangeType.UPDATE)
+                .title(title)
+                .author("Artur")
+                .isbn("isbn-" + bookId)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.fabio.libraryapi.service.suggest;
+
+import com.fabio.libraryapi.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSuggestionIndexTest {
+
+    BookSuggestionIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        this.index = new BookSuggestionIndex(2);
+        index.put(book(1l, "As aventuras", "Artur"));
+        index.put(book(2l, "Assassinato no Expresso", "Agatha"));
+        index.put(book(3l, "Ástrologia", "Fulano"));
+    }
+
+    @Test
+    @DisplayName("Deve sugerir titulos e autores pelo prefixo normalizado")
+    public void suggestByPrefixTest(){
+        assertThat(index.suggest("AS", 10)).hasSize(2);
+        assertThat(index.suggest("astro", 10)).containsExactly("Ástrologia");
+        assertThat(index.suggest("art", 10)).containsExactly("Artur");
+        assertThat(index.suggest("xyz", 10)).isEmpty();
+        assertThat(index.suggest("", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve ordenar as sugestoes pela popularidade")
+    public void suggestByPopularityTest(){
+        index.hit(3l);
+        index.hit(3l);
+        index.hit(2l);
+        index.foldHits();
+
+        assertThat(index.suggest("as", 10)).containsExactly("Ástrologia", "Assassinato no Expresso");
+    }
+
+    @Test
+    @DisplayName("Deve trocar o titulo antigo ao atualizar um livro")
+    public void updateBookTest(){
+        index.hit(1l);
+        index.foldHits();
+        index.put(book(1l, "Outro titulo", "Artur"));
+
+        assertThat(index.suggest("as av", 10)).isEmpty();
+        assertThat(index.suggest("outro", 10)).containsExactly("Outro titulo");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve voltar a sugerir termos menos populares quando um livro sai do indice")
+    public void removeBookTest(){
+        index.hit(2l);
+        index.hit(3l);
+        index.foldHits();
+        index.remove(3l);
+
+        assertThat(index.suggest("as", 10)).containsExactly("Assassinato no Expresso", "As aventuras");
+        assertThat(index.suggest("astro", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve aplicar os acessos na popularidade apenas ao somar os contadores")
+    public void foldHitsTest(){
+        index.hit(3l);
+        index.hit(3l);
+
+        assertThat(index.suggest("as", 10)).containsExactly("As aventuras", "Assassinato no Expresso");
+        index.foldHits();
+        assertThat(index.suggest("as", 10)).containsExactly("Ástrologia", "As aventuras");
+    }
+
+    @Test
+    @DisplayName("Deve sugerir quando o prefixo termina no meio de um trecho compactado")
+    public void compressedPathTest(){
+        index.put(book(4l, "Astronauta", "Fulano"));
+        index.remove(3l);
+
+        assertThat(index.suggest("astr", 10)).containsExactly("Astronauta");
+        assertThat(index.suggest("astronau", 10)).containsExactly("Astronauta");
+        assertThat(index.suggest("astrol", 10)).isEmpty();
+        assertThat(index.suggest("astronautas", 10)).isEmpty();
+        assertThat(index.suggest("fulano", 10)).containsExactly("Fulano");
+    }
+
+    private Book book(long id, String title, String author) {
+        return Book.builder().id(id).title(title).author(author).isbn(String.valueOf(id)).build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.fabio.libraryapi.sharding;
+
+import com.fabio.libraryapi.entity.Book;
+import com.fabio.libraryapi.entity.ExportJob;
+import com.fabio.libraryapi.exception.BusinessException;
+import com.fabio.libraryapi.service.BookExportService;
+import com.fabio.libraryapi.service.BookService;
+import com.fabio.libraryapi.service.export.ExportFormat;
+import com.fabio.libraryapi.service.export.ExportStatus;
+import com.fabio.libraryapi.service.feed.ChangeFeed;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//tres bancos h2 em memoria fazendo o papel dos shards
+@SpringBootTest(properties = {
+        "library.sharding.enabled=true",
+        "library.sharding.urls=" + ShardedBookServiceTest.SHARD_0 + "," + ShardedBookServiceTest.SHARD_1 + "," + ShardedBookServiceTest.SHARD_2,
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@DirtiesContext
+public class ShardedBookServiceTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:sharded-test-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:sharded-test-1;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2 = "jdbc:h2:mem:sharded-test-2;DB_CLOSE_DELAY=-1";
+    static final int BOOKS = 30;
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookShardRouter router;
+
+    @Autowired
+    BookExportService exportService;
+
+    @Test
+    @DisplayName("Deve distribuir, buscar, paginar e deletar livros entre os shards")
+    public void shardedCrudTest() {
+        //cenario
+        List<Book> saved = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            saved.add(service.save(Book.builder().isbn("978-" + i).title(String.format("Titulo %02d", i)).author("Autor").build()));
+        }
+
+        //cada livro fica no shard do seu isbn e o id aponta para o mesmo shard
+        for (Book book : saved) {
+            assertThat(router.shardOfId(book.getId())).isEqualTo(router.shardOfIsbn(book.getIsbn()));
+            //ids pequenos: cabem no number do javascript sem perder precisao
+            assertThat(book.getId()).isLessThan(1L << 53);
+            assertThat(service.getById(book.getId()).isPresent()).isTrue();
+        }
+        int[] counts = {count(SHARD_0), count(SHARD_1), count(SHARD_2)};
+        assertThat(counts[0] + counts[1] + counts[2]).isEqualTo(BOOKS);
+        assertThat(counts).doesNotContain(0);
+
+        //isbn repetido e barrado no shard dele
+        Throwable exception = Assertions.catchThrowable(() ->
+                service.save(Book.builder().isbn("978-3").title("Outro").author("Autor").build()));
+        assertThat(exception).isInstanceOf(BusinessException.class);
+
+        //busca espalhada com ordenacao e paginacao unificadas
+        Page<Book> page = service.find(new Book(), PageRequest.of(1, 7, Sort.by("title").descending()));
+        List<String> expected = saved.stream()
+                .map(Book::getTitle)
+                .sorted(Comparator.reverseOrder())
+                .skip(7).limit(7)
+                .collect(Collectors.toList());
+        assertThat(page.getTotalElements()).isEqualTo(BOOKS);
+        assertThat(page.getContent().stream().map(Book::getTitle).collect(Collectors.toList())).isEqualTo(expected);
+
+        //pagina sem limite ou funda demais nao e espalhada pelos shards
+        assertThat(Assertions.catchThrowable(() -> service.find(new Book(), Pageable.unpaged())))
+                .isInstanceOf(BusinessException.class);
+        assertThat(Assertions.catchThrowable(() -> service.find(new Book(), PageRequest.of(Integer.MAX_VALUE, 20))))
+                .isInstanceOf(BusinessException.class);
+
+        //feed de alteracoes juntando os shards: o token guarda a posicao de cada um
+        ChangeFeed feed = service.changes("0", 100);
+        assertThat(feed.getChanges()).hasSize(BOOKS);
+        assertThat(feed.isHasMore()).isFalse();
+        String[] next = feed.getNext().split("\\.");
+        assertThat(next).containsExactly(String.valueOf(counts[0]), String.valueOf(counts[1]), String.valueOf(counts[2]));
+        //pagina menor que o total: continuar do token nao repete nem pula alteracao
+        ChangeFeed firstPage = service.changes("0", 10);
+        ChangeFeed rest = service.changes(firstPage.getNext(), 100);
+        assertThat(firstPage.isHasMore()).isTrue();
+        assertThat(firstPage.getChanges().size() + rest.getChanges().size()).isEqualTo(BOOKS);
+        assertThat(rest.getNext()).isEqualTo(feed.getNext());
+
+        //delete vai para o shard do id
+        Book first = saved.get(0);
+        service.delete(first);
+        assertThat(service.getById(first.getId()).isPresent()).isFalse();
+        assertThat(count(SHARD_0) + count(SHARD_1) + count(SHARD_2)).isEqualTo(BOOKS - 1);
+    }
+
+    @Test
+    @DisplayName("Deve continuar pelo feed a partir do token da exportacao com varios shards")
+    public void exportTokenContinuesFeedTest() throws Exception {
+        //cenario
+        service.save(Book.builder().isbn("export-antes").title("Antes").author("Autor").build());
+        ExportJob job = exportService.start(ExportFormat.NDJSON);
+        for (int i = 0; i < 500 && !job.isDone() && job.getStatus() != ExportStatus.FAILED; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(job.getStatus()).isEqualTo(ExportStatus.DONE);
+        //execucao
+        Book after = service.save(Book.builder().isbn("export-depois").title("Depois").author("Autor").build());
+        ChangeFeed feed = service.changes(job.getChangeToken(), 100);
+        //verificacao
+        assertThat(job.getChangeToken().split("\\.")).hasSize(router.getShards());
+        assertThat(feed.getChanges()).hasSize(1);
+        assertThat(feed.getChanges().get(0).getBookId()).isEqualTo(after.getId());
+    }
+
+    private int count(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""))
+                .queryForObject("select count(*) from book", Integer.class);
+    }
+}